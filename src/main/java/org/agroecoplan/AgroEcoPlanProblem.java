@@ -2,24 +2,40 @@ package org.agroecoplan;
 
 import org.chocosolver.solver.Model;
 import org.chocosolver.solver.Solution;
+import org.chocosolver.solver.Solver;
 import org.chocosolver.solver.constraints.Constraint;
 import org.chocosolver.solver.constraints.extension.Tuples;
 import org.chocosolver.solver.constraints.extension.hybrid.ISupportable;
+import org.chocosolver.solver.search.SearchState;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.search.strategy.selectors.values.IntValueSelector;
+import org.chocosolver.solver.search.strategy.selectors.variables.DomOverWDegRef;
 import org.chocosolver.solver.variables.BoolVar;
 import org.chocosolver.solver.variables.IntVar;
 import org.chocosolver.solver.variables.UndirectedGraphVar;
+import org.chocosolver.solver.variables.Variable;
+import org.chocosolver.util.criteria.Criterion;
 import org.chocosolver.util.iterators.DisposableValueIterator;
 import org.chocosolver.util.objects.graphs.GraphFactory;
 import org.chocosolver.util.objects.graphs.UndirectedGraph;
 import org.chocosolver.util.objects.setDataStructures.ISet;
 import org.chocosolver.util.objects.setDataStructures.SetFactory;
 import org.chocosolver.util.objects.setDataStructures.SetType;
+import org.chocosolver.util.tools.TimeUtils;
 import org.chocosolver.solver.constraints.extension.hybrid.HybridTuples;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.chocosolver.solver.constraints.extension.hybrid.HybridTuples.*;
@@ -34,6 +50,8 @@ public class AgroEcoPlanProblem {
     private Data data;
     private int nbMaxBeds;
 
+    private IntervalGraphs graphs;
+
     private ISet[] intervalGraphSets;
 
     int[][] intervalGraph;
@@ -45,10 +63,81 @@ public class AgroEcoPlanProblem {
     private IntVar[] assignment;
     private IntVar gain;
 
+    /**
+     * Objectives combined in the gain, by decreasing priority, if the gain is lexicographic.
+     */
+    private IntVar[] lexicographicObjectives;
+    private int lexicographicWeight;
+
     private IntVar nbBeds;
 
     private boolean verbose = false;
 
+    /**
+     * True if a posted constraint uses the numbering of beds as adjacency (|a - b| = 1), or as an order (C5).
+     */
+    private boolean bedNumberingUsed = false;
+    private boolean bedOrderUsed = false;
+
+    /**
+     * Value symmetry-breaking constraints over interchangeable beds, if posted.
+     */
+    private final List<Constraint> bedSymmetryConstraints = new ArrayList<>();
+
+    /**
+     * Ordering constraints posted on groups of interchangeable crops.
+     */
+    private final List<Constraint> cropSymmetryConstraints = new ArrayList<>();
+
+    /**
+     * Groups of interchangeable crops currently ordered, and crops excluded from these orderings after an edit.
+     */
+    private List<ISet> cropSymmetryGroups = new ArrayList<>();
+    private final Set<Integer> releasedCrops = new HashSet<>();
+
+    /**
+     * No-overlap constraints of the base model, with the crops they range over.
+     */
+    private final Map<Constraint, int[]> baseConstraints = new LinkedHashMap<>();
+
+    /**
+     * Constraints posted for each constraint family (C1 to C6), kept when the family is disabled so that it can be
+     * enabled again without being rebuilt.
+     */
+    private final Map<String, List<Constraint>> constraintFamilies = new HashMap<>();
+    private final Set<String> enabledFamilies = new HashSet<>();
+
+    /**
+     * Constraints posted for the objectives O1 and O2, used to label constraints when profiling.
+     */
+    private final Map<String, List<Constraint>> objectiveConstraints = new HashMap<>();
+
+    /**
+     * Sizes of what was posted for each constraint family and objective: variables created, boolean variables among
+     * them, and table tuples (see {@link #getPostedSizes()}).
+     */
+    private final Map<String, long[]> postedSizes = new HashMap<>();
+    private long nbTableTuples = 0;
+
+    /**
+     * Edits: beds fixed and beds forbidden by the user, by crop.
+     */
+    private final Map<Integer, Constraint> fixedBedEdits = new HashMap<>();
+    private final Map<Integer, Map<Integer, Constraint>> forbiddenBedEdits = new HashMap<>();
+    private boolean edited = false;
+
+    private boolean forbiddenBedsInDomains;
+
+    /**
+     * Plan of the last resolution, used to warm-start the next one.
+     */
+    private int[] lastPlan;
+
+    /**
+     * Time limit of the last resolution, removed before the next one since the solver keeps its stop criteria.
+     */
+    private Criterion resolveTimeLimit;
+
     /**
      * In verbose mode, if not null, détails the 01 criteria calculus
      */
@@ -59,70 +148,33 @@ public class AgroEcoPlanProblem {
      */public Function<Solution, String> showO2Details = null;
 
     public AgroEcoPlanProblem(Data data, boolean includeForbiddenBeds, boolean verbose) {
+        this(data, new IntervalGraphs(data), includeForbiddenBeds, verbose);
+    }
+
+    /**
+     * Create a problem instance from precomputed interval graphs, which can be shared between instances built on
+     * the same data.
+     */
+    public AgroEcoPlanProblem(Data data, IntervalGraphs graphs, boolean includeForbiddenBeds, boolean verbose) {
         this.data = data;
         this.nbMaxBeds = data.NB_BEDS;
         this.verbose = verbose;
+        this.forbiddenBedsInDomains = includeForbiddenBeds;
         if (verbose) {
             showDataSummary();
         }
-        initIntervalGraphs();
+        initIntervalGraphs(graphs);
         this.model = new Model();
         initBaseModel(includeForbiddenBeds, verbose);
         breakSymmetries();
     }
 
-    private void initIntervalGraphs() {
-        intervalGraphSets = new ISet[data.NB_NEEDS];
-        intervalGraphSetsWithRotations = new ISet[data.NB_NEEDS];
-        intervalGraph = new int[data.NB_NEEDS][];
-        intervalGraphWithRotations = new int[data.NB_NEEDS][];
-        for (int i = 0; i < data.NB_NEEDS; i++) {
-            intervalGraphSets[i] = SetFactory.makeBipartiteSet(0);
-            intervalGraphSetsWithRotations[i] = SetFactory.makeBipartiteSet(0);
-            for (int j = 0; j < data.NB_NEEDS; j++) {
-                if (i != j) {
-                    // Effective cultivation period
-                    int si = data.NEEDS_BEGIN[i];
-                    int sj = data.NEEDS_BEGIN[j];
-                    int ei = data.NEEDS_END[i];
-                    int ej = data.NEEDS_END[j];
-                    // If the intervals are intersecting, there is no need to consider the rotation and cie constraints
-                    if (IntervalUtils.intersect(si, ei, sj, ej)) {
-                        intervalGraphSets[i].add(j);
-                        intervalGraphSetsWithRotations[i].add(j);
-                    } else {
-                        // TODO LEGACY WITH RETURN DELAY IN NEEDS FILE
-                        if (data.DELAYS == null) {
-                            if (data.NEEDS_FAMILY[i].equals(data.NEEDS_FAMILY[j])) {
-                                ei += data.NEEDS_RETURN_DELAY[i] * NB_WEEKS_IN_YEAR - (ei - si);
-                                ej += data.NEEDS_RETURN_DELAY[j] * NB_WEEKS_IN_YEAR - (ej - si);
-                                if (IntervalUtils.intersect(si, ei, sj, ej)) {
-                                    intervalGraphSetsWithRotations[i].add(j);
-                                }
-                            }
-                        } else {
-                            // 1 - Need for compost constraint:
-                            //      if both b_i and b_j need compost, we extend their cultivation end to 1 year
-                            //      (52 weeks).
-                            // TODO
-                            // 2 - Turnover constraint:
-                            //      when b_i and b_j need a return delay, we use is to extend their
-                            //      cultivation end, thus ensure the satisfaction of the return delay in the interval graph
-                            //      directly.
-                            if (data.DELAYS[data.NEEDS_SPECIES[i]][data.NEEDS_SPECIES[j]] > 0) {
-                                ei += data.NEEDS_RETURN_DELAY[i] * NB_WEEKS_IN_YEAR - (ei - si);
-                                ej += data.NEEDS_RETURN_DELAY[j] * NB_WEEKS_IN_YEAR - (ej - si);
-                                if (IntervalUtils.intersect(si, ei, sj, ej)) {
-                                    intervalGraphSetsWithRotations[i].add(j);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            intervalGraph[i] = intervalGraphSets[i].toArray();
-            intervalGraphWithRotations[i] = intervalGraphSetsWithRotations[i].toArray();
-        }
+    private void initIntervalGraphs(IntervalGraphs graphs) {
+        this.graphs = graphs;
+        intervalGraphSets = graphs.intervalGraphSets;
+        intervalGraph = graphs.intervalGraph;
+        intervalGraphSetsWithRotations = graphs.intervalGraphSetsWithRotations;
+        intervalGraphWithRotations = graphs.intervalGraphWithRotations;
     }
 
     /**
@@ -153,7 +205,11 @@ public class AgroEcoPlanProblem {
             assignment[i] = model.intVar(i+"s"+data.NEEDS_SPECIES[i], domain);
         }
         // Find maximal cliques
-        List<ISet> maximalCliques = ChordalGraphUtils.findMaximalCliques(intervalGraph);
+        List<ISet> maximalCliques;
+        try (Phases.Phase phase = Phases.start("cliques")) {
+            maximalCliques = ChordalGraphUtils.findMaximalCliques(intervalGraph);
+            phase.setSize(maximalCliques.size());
+        }
         int cliqueNumber = maximalCliques.stream().mapToInt(s -> s.size()).max().getAsInt();
         if (verbose) {
             System.out.println("CHORDAL WITHOUT ROTATIONS (for debug) ? " + ChordalGraphUtils.isChordal(intervalGraph));
@@ -175,19 +231,139 @@ public class AgroEcoPlanProblem {
          }*/
 
         // With allDifferent on every maximal clique
-        for (ISet clique : maximalCliques) {
-            IntVar[] vars = IntStream.of(clique.toArray()).mapToObj(i -> assignment[i]).toArray(IntVar[]::new);
-            model.allDifferent(vars).post();
+        try (Phases.Phase phase = Phases.start("post-base")) {
+            for (ISet clique : maximalCliques) {
+                postNoOverlap(clique.toArray());
+            }
+            phase.setSize(maximalCliques.size());
         }
         //this.nbBeds = model.intVar(cliqueNumber, nbMaxBeds);
         //model.nValues(assignment, nbBeds).post();
     }
 
+    private void postNoOverlap(int[] crops) {
+        IntVar[] vars = IntStream.of(crops).mapToObj(i -> assignment[i]).toArray(IntVar[]::new);
+        Constraint c = vars.length == 2 ? model.arithm(vars[0], "!=", vars[1]) : model.allDifferent(vars);
+        c.post();
+        baseConstraints.put(c, crops);
+    }
+
+    /**
+     * Post the constraints of a family (C1 to C6, see {@link SolverConfiguration}), and record them so that the
+     * family can be disabled and enabled again. Does nothing if the family is already enabled.
+     */
+    public void postConstraintFamily(String family) {
+        if (enabledFamilies.contains(family)) {
+            return;
+        }
+        Runnable post;
+        switch (family) {
+            case "C1":
+                post = this::postRotationConstraints;
+                break;
+            case "C2":
+                post = this::postForbidNegativeInteractionsConstraint;
+                break;
+            case "C3":
+                post = this::postDiluteSpeciesConstraint;
+                break;
+            case "C4":
+                post = this::postForbiddenBedsConstraint;
+                break;
+            case "C5":
+                post = this::postGroupIdenticalCropsConstraint;
+                break;
+            case "C6":
+                post = this::postForbidNegativePrecedencesConstraint;
+                break;
+            default:
+                return;
+        }
+        try (Phases.Phase phase = Phases.start("post-" + family)) {
+            long[] sizes = sizeSnapshot();
+            List<Constraint> posted = recordPosted(post);
+            phase.setSize(posted.size());
+            constraintFamilies.put(family, posted);
+            recordSizes(family, sizes);
+        }
+        enabledFamilies.add(family);
+    }
+
+    /**
+     * @return the constraints posted by the given action, except symmetry-breaking ones
+     */
+    private List<Constraint> recordPosted(Runnable post) {
+        Set<Constraint> before = snapshot();
+        post.run();
+        return postedSince(before);
+    }
+
+    private Set<Constraint> snapshot() {
+        Set<Constraint> constraints = Collections.newSetFromMap(new IdentityHashMap<>());
+        constraints.addAll(Arrays.asList(model.getCstrs()));
+        return constraints;
+    }
+
+    private List<Constraint> postedSince(Set<Constraint> before) {
+        return Arrays.stream(model.getCstrs())
+                .filter(c -> !before.contains(c) && !cropSymmetryConstraints.contains(c)
+                        && !bedSymmetryConstraints.contains(c))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the number of variables of the model and of table tuples posted so far
+     */
+    private long[] sizeSnapshot() {
+        return new long[]{model.getNbVars(), nbTableTuples};
+    }
+
+    /**
+     * Record the variables and table tuples created under a label since the given snapshot.
+     */
+    private void recordSizes(String label, long[] before) {
+        Variable[] vars = model.getVars();
+        long booleans = Arrays.stream(vars, (int) before[0], vars.length).filter(v -> v instanceof BoolVar).count();
+        postedSizes.put(label, new long[]{vars.length - before[0], booleans, nbTableTuples - before[1]});
+    }
+
+    private Constraint table(IntVar x, IntVar y, Tuples tuples) {
+        nbTableTuples += tuples.nbTuples();
+        return model.table(x, y, tuples);
+    }
+
+    private Constraint table(IntVar[] vars, Tuples tuples) {
+        nbTableTuples += tuples.nbTuples();
+        return model.table(vars, tuples);
+    }
+
     /**
      * Post rotation constraints: any two crops from the same botanical family must respect a rotation delay
-     * if they are cultivated in the same bed.
+     * if they are cultivated in the same bed. The rotation graph is usually not chordal, so instead of clique
+     * constraints a single propagator handles its edges that are not cultivation overlaps.
      */
     public void postRotationConstraints() {
+        ISet[] conflicts = new ISet[data.NB_NEEDS];
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            conflicts[i] = SetFactory.makeBipartiteSet(0);
+        }
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            for (int j : intervalGraphWithRotations[i]) {
+                if (!intervalGraphSets[i].contains(j)) {
+                    conflicts[i].add(j);
+                    conflicts[j].add(i);
+                }
+            }
+        }
+        int[][] conflictLists = Arrays.stream(conflicts).map(ISet::toArray).toArray(int[][]::new);
+        model.post(new Constraint("rotationDelays", new PropRotationDelays(assignment, conflictLists)));
+    }
+
+    /**
+     * Former decomposition of {@link #postRotationConstraints()}, with a binary difference constraint for every
+     * edge of the rotation graph that is not a cultivation overlap.
+     */
+    public void postRotationConstraintsDecomposed() {
         for (int i = 0; i < data.NB_NEEDS; i++) {
             int finalI = i;
             IntVar[] overlapping = IntStream.of(intervalGraphWithRotations[i])
@@ -203,23 +379,28 @@ public class AgroEcoPlanProblem {
      * Post constraints such that no two crops with negative interactions are adjacents.
      */
     public void postForbidNegativeInteractionsConstraint() {
+        useBedNumbering(false);
         for (int i = 0; i < data.NB_NEEDS; i++) {
             for (int j = i + 1; j < data.NB_NEEDS; j++) {
-                if (data.INTERACTIONS[data.NEEDS_SPECIES[i]][data.NEEDS_SPECIES[j]] < 0
-                        && intervalGraphSets[i].contains(j)
-                        && IntervalUtils.minDistance(assignment[i], assignment[j]) <= 1) {
-                    /* Tuples forbidden = new Tuples(false);
-                    DisposableValueIterator vit = assignment[i].getValueIterator(true);
-                    while (vit.hasNext()) {
-                        int a = vit.next();
-                        for (int b : data.ADJACENCY[a]) {
-                            forbidden.add(a, b);
-                        }
-                    }
-                    model.table(assignment[i], assignment[j], forbidden).post();*/
-                    model.distance(assignment[i], assignment[j], ">", 1).post();
+                postForbidNegativeInteraction(i, j);
+            }
+        }
+    }
+
+    private void postForbidNegativeInteraction(int i, int j) {
+        if (data.INTERACTIONS[data.NEEDS_SPECIES[i]][data.NEEDS_SPECIES[j]] < 0
+                && intervalGraphSets[i].contains(j)
+                && IntervalUtils.minDistance(assignment[i], assignment[j]) <= 1) {
+            /* Tuples forbidden = new Tuples(false);
+            DisposableValueIterator vit = assignment[i].getValueIterator(true);
+            while (vit.hasNext()) {
+                int a = vit.next();
+                for (int b : data.ADJACENCY[a]) {
+                    forbidden.add(a, b);
                 }
             }
+            model.table(assignment[i], assignment[j], forbidden).post();*/
+            model.distance(assignment[i], assignment[j], ">", 1).post();
         }
     }
 
@@ -229,19 +410,41 @@ public class AgroEcoPlanProblem {
     public void postDiluteSpeciesConstraint() {
         for (int i = 0; i < data.NB_NEEDS; i++) {
             for (int j = i + 1; j < data.NB_NEEDS; j++) {
-                if (data.NEEDS_SPECIES[i] == data.NEEDS_SPECIES[j] && intervalGraphSets[i].contains(j)
-                        && IntervalUtils.minDistance(assignment[i], assignment[j]) <= 1) {
-                    Tuples forbidden = new Tuples(false);
-                    DisposableValueIterator vit = assignment[i].getValueIterator(true);
-                    while (vit.hasNext()) {
-                        int a = vit.next();
-                        for (int b : data.ADJACENCY[a]) {
-                            forbidden.add(a, b);
-                        }
-                    }
-                    model.table(assignment[i], assignment[j], forbidden).post();
+                postDiluteSpecies(i, j);
+            }
+        }
+    }
+
+    private void postDiluteSpecies(int i, int j) {
+        if (data.NEEDS_SPECIES[i] == data.NEEDS_SPECIES[j] && intervalGraphSets[i].contains(j)
+                && IntervalUtils.minDistance(assignment[i], assignment[j]) <= 1) {
+            Tuples forbidden = new Tuples(false);
+            DisposableValueIterator vit = assignment[i].getValueIterator(true);
+            while (vit.hasNext()) {
+                int a = vit.next();
+                for (int b : data.ADJACENCY[a]) {
+                    forbidden.add(a, b);
                 }
             }
+            table(assignment[i], assignment[j], forbidden).post();
+        }
+    }
+
+    /**
+     * Post constraints forbidding the beds listed in the crop calendar, if they were not removed from the domains
+     * when the model was created.
+     */
+    public void postForbiddenBedsConstraint() {
+        if (forbiddenBedsInDomains) {
+            return;
+        }
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            if (data.NEEDS_FIXED_BED[i] >= 0) {
+                continue;
+            }
+            for (int b : data.NEEDS_FORBIDDEN_BEDS[i]) {
+                model.arithm(assignment[i], "!=", b).post();
+            }
         }
     }
 
@@ -261,7 +464,7 @@ public class AgroEcoPlanProblem {
                             forbidden.add(a, b);
                         }
                     }
-                    model.table(assignment[i], assignment[j], forbidden).post();
+                    table(assignment[i], assignment[j], forbidden).post();
                 }
             }
         }
@@ -272,6 +475,9 @@ public class AgroEcoPlanProblem {
      * of vegatable beds.
      */
     public void postGroupIdenticalCropsConstraint() {
+        useBedNumbering(true);
+        // Crops from different rows are no longer interchangeable once each row is grouped
+        breakSymmetries(data.GROUPS);
         for (ISet s : data.GROUPS) {
             IntVar[] group = IntStream.of(s.toArray()).mapToObj(i -> assignment[i]).toArray(IntVar[]::new);
             Tuples allowed = new Tuples(false);
@@ -289,7 +495,7 @@ public class AgroEcoPlanProblem {
                     allowed.add(IntStream.range(a, a + group.length).toArray());
                 }
             }
-            model.table(group, allowed).post();
+            table(group, allowed).post();
         }
     }
 
@@ -310,11 +516,32 @@ public class AgroEcoPlanProblem {
                 }
             }
         }
-        return postInteractionReifTable(positivePairs);
+        Set<Constraint> before = snapshot();
+        long[] sizes = sizeSnapshot();
+        IntVar g = postInteractionReifTable(positivePairs);
+        objectiveConstraints.put("O1", postedSince(before));
+        recordSizes("O1", sizes);
+        return g;
         //postInteractionCustomPropBased(positivePairs);
     }
 
+    /**
+     * Post constraints such that no crop is directly preceded, on its bed, by a crop it cannot follow
+     * (negative precedence). A single propagator reasons on per-bed timelines.
+     */
     public void postForbidNegativePrecedencesConstraint() {
+        if (data.PRECEDENCES == null) {
+            return;
+        }
+        model.post(new Constraint("forbidNegativePrecedences",
+                new PropForbiddenPrecedences(assignment, data.NEEDS_BEGIN, data.NEEDS_SPECIES, data.PRECEDENCES)));
+    }
+
+    /**
+     * Former decomposition of {@link #postForbidNegativePrecedencesConstraint()}: a smart table over the backward
+     * sequence of crops is posted for each pair of crops, which does not scale with the length of the calendar.
+     */
+    public void postForbidNegativePrecedencesConstraintTableBased() {
         // 1. Construct the sequence of non-overlapping crops.
         //     a. Sort all crops by descending order of crop beginning.
         Integer[] sortedCrops = IntStream.range(0, data.NB_NEEDS).mapToObj(i -> i).toArray(Integer[]::new);
@@ -423,6 +650,8 @@ public class AgroEcoPlanProblem {
     }
 
     public IntVar initNumberOfPositivePrecedencesCountBased() throws AgroecoplanException {
+        Set<Constraint> before = snapshot();
+        long[] sizes = sizeSnapshot();
         // 1. Construct the sequence of non-overlapping crops.
         //     a. Sort all crops by descending order of crop beginning.
         Integer[] sortedCrops = IntStream.range(0, data.NB_NEEDS).mapToObj(i -> i).toArray(Integer[]::new);
@@ -483,6 +712,8 @@ public class AgroEcoPlanProblem {
             };
         }
 
+        objectiveConstraints.put("O2", postedSince(before));
+        recordSizes("O2", sizes);
         return sum;
 /*        if (gain != null) {
             throw new AgroecoplanException("Gain is already defined");
@@ -504,11 +735,11 @@ public class AgroEcoPlanProblem {
             }
             if (verbose) {
                 BoolVar btable = model.boolVar( assignment[p[0]].getName() + "-" + assignment[p[1]].getName() );
-                model.table(assignment[p[0]], assignment[p[1]], allowed).reifyWith(btable);
+                table(assignment[p[0]], assignment[p[1]], allowed).reifyWith(btable);
                 positive[i] = btable;
             }
             else
-                positive[i] = model.table(assignment[p[0]], assignment[p[1]], allowed).reify();
+                positive[i] = table(assignment[p[0]], assignment[p[1]], allowed).reify();
         }
         /*        if (gain != null) {
             throw new AgroecoplanException("Gain is already defined");
@@ -530,6 +761,7 @@ public class AgroEcoPlanProblem {
     }
 
     public void postInteractionReifBased(List<int[]> positivePairs) throws AgroecoplanException {
+        useBedNumbering(false);
         BoolVar[] positiveDists = new BoolVar[positivePairs.size()];
         for (int i = 0; i < positivePairs.size(); i++) {
             int[] p = positivePairs.get(i);
@@ -543,6 +775,7 @@ public class AgroEcoPlanProblem {
     }
 
     private void postInteractionCountBased(List<int[]> positivePairs) throws AgroecoplanException {
+        useBedNumbering(false);
         IntVar[][] positiveAssignments = new IntVar[positivePairs.size()][];
         for (int i = 0; i < positivePairs.size(); i++) {
             int[] p = positivePairs.get(i);
@@ -562,6 +795,7 @@ public class AgroEcoPlanProblem {
     }
 
     private void postInteractionCustomPropBased(List<int[]> positivePairs) throws AgroecoplanException {
+        useBedNumbering(false);
         IntVar[][] positiveAssignments = new IntVar[positivePairs.size()][];
         for (int i = 0; i < positivePairs.size(); i++) {
             int[] p = positivePairs.get(i);
@@ -575,6 +809,7 @@ public class AgroEcoPlanProblem {
     }
 
     private void postInteractionGraphBased(List<int[]> positivePairs) {
+        useBedNumbering(false);
         UndirectedGraph glb = GraphFactory.makeStoredUndirectedGraph(model, assignment.length, SetType.BITSET, SetType.BIPARTITESET);
         UndirectedGraph gub = GraphFactory.makeStoredUndirectedGraph(model, assignment.length, SetType.BITSET, SetType.BIPARTITESET);
         for (int[] i : positivePairs) {
@@ -596,10 +831,316 @@ public class AgroEcoPlanProblem {
      * Everything related to symmetry-breaking in the base model should be included here.
      */
     private void breakSymmetries() {
-        for (ISet s : data.GROUPS) {
-            IntVar[] group = IntStream.of(s.toArray()).mapToObj(i -> assignment[i]).toArray(IntVar[]::new);
-            model.increasing(group, 1).post();
+        breakSymmetries(data.SYMMETRIC_GROUPS);
+    }
+
+    /**
+     * Order the assignments of interchangeable crops, replacing previously posted ordering constraints.
+     * @param groups groups of interchangeable crops
+     */
+    private void breakSymmetries(List<ISet> groups) {
+        if (!cropSymmetryConstraints.isEmpty()) {
+            model.unpost(cropSymmetryConstraints.toArray(new Constraint[0]));
+            cropSymmetryConstraints.clear();
+        }
+        cropSymmetryGroups = groups;
+        for (ISet s : groups) {
+            IntVar[] group = IntStream.of(s.toArray()).filter(i -> !releasedCrops.contains(i)).sorted()
+                    .mapToObj(i -> assignment[i]).toArray(IntVar[]::new);
+            if (group.length < 2) {
+                continue;
+            }
+            Constraint c = model.increasing(group, 1);
+            c.post();
+            cropSymmetryConstraints.add(c);
+        }
+    }
+
+    /**
+     * Remove the ordering constraints posted on interchangeable crops, e.g. to check that they keep the optimum. They
+     * are posted again if C5 is enabled or disabled afterwards.
+     */
+    public void releaseCropSymmetries() {
+        breakSymmetries(Collections.emptyList());
+    }
+
+    /**
+     * Break value symmetries: interchangeable beds (see {@link BedSymmetryUtils#findInterchangeableBeds}) must be
+     * used in increasing order along the assignment variables (value precedence). This is compatible with the
+     * ordering constraints posted on identical crops, as both select the lexicographically smallest solution.
+     * Must be called once the constraints are posted, since interchangeability depends on them. If a constraint
+     * relying on bed numbering is posted afterwards, the symmetry-breaking constraints are removed.
+     * @return the number of classes of interchangeable beds
+     */
+    public int breakBedSymmetries() {
+        unpostBedSymmetries();
+        if (bedOrderUsed || edited) {
+            return 0;
+        }
+        List<int[]> classes = BedSymmetryUtils.findInterchangeableBeds(assignment, data.ADJACENCY, nbMaxBeds, bedNumberingUsed);
+        for (int[] beds : classes) {
+            Constraint c = model.intValuePrecedeChain(assignment, beds);
+            c.post();
+            bedSymmetryConstraints.add(c);
+        }
+        if (verbose) {
+            System.out.println("NB CLASSES OF INTERCHANGEABLE BEDS = " + classes.size());
+        }
+        return classes.size();
+    }
+
+    private void unpostBedSymmetries() {
+        if (!bedSymmetryConstraints.isEmpty()) {
+            model.unpost(bedSymmetryConstraints.toArray(new Constraint[0]));
+            bedSymmetryConstraints.clear();
+        }
+    }
+
+    /**
+     * Record that the numbering of beds is used by a constraint (as an order if asOrder is true, e.g. for
+     * contiguous groups, otherwise as adjacency). Bed symmetry-breaking constraints previously posted may no longer
+     * be valid, and are removed.
+     */
+    private void useBedNumbering(boolean asOrder) {
+        bedNumberingUsed = true;
+        bedOrderUsed |= asOrder;
+        unpostBedSymmetries();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //////////////////////////////////////////   INCREMENTAL EDITS   ///////////////////////////////////////////////////
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Enable or disable a constraint family (C1 to C6) without rebuilding the model. A disabled family keeps its
+     * constraints, which are posted again when it is enabled. Enabling a family constraining beds (C2 to C5) releases
+     * the bed symmetry-breaking constraints, since beds may no longer be interchangeable.
+     * C4 cannot be disabled if the forbidden beds were removed from the domains when the model was created.
+     */
+    public void setConstraintFamily(String family, boolean enabled) {
+        prepareEdit();
+        if (enabled == enabledFamilies.contains(family)) {
+            return;
+        }
+        if (!enabled) {
+            if (family.equals("C4") && forbiddenBedsInDomains) {
+                throw new IllegalStateException("Forbidden beds are excluded from the domains, C4 cannot be disabled");
+            }
+            model.unpost(constraintFamilies.get(family).toArray(new Constraint[0]));
+            enabledFamilies.remove(family);
+            if (family.equals("C5")) {
+                breakSymmetries();
+            }
+            return;
+        }
+        if (!family.equals("C1") && !family.equals("C6")) {
+            releaseBedSymmetries();
+        }
+        List<Constraint> recorded = constraintFamilies.get(family);
+        if (recorded == null) {
+            postConstraintFamily(family);
+            return;
+        }
+        if (family.equals("C2")) {
+            useBedNumbering(false);
+        } else if (family.equals("C5")) {
+            useBedNumbering(true);
+            breakSymmetries(data.GROUPS);
+        }
+        model.post(recorded.toArray(new Constraint[0]));
+        enabledFamilies.add(family);
+    }
+
+    /**
+     * Assign a crop to a bed, replacing its previous fixed bed if any.
+     */
+    public void fixBed(int need, int bed) {
+        prepareEdit();
+        releaseSymmetries(need);
+        Constraint previous = fixedBedEdits.remove(need);
+        if (previous != null) {
+            model.unpost(previous);
+        }
+        Constraint c = model.arithm(assignment[need], "=", bed);
+        c.post();
+        fixedBedEdits.put(need, c);
+    }
+
+    /**
+     * Remove the fixed bed of a crop set by {@link #fixBed}. Beds fixed in the crop calendar cannot be unfixed.
+     */
+    public void unfixBed(int need) {
+        prepareEdit();
+        Constraint c = fixedBedEdits.remove(need);
+        if (c != null) {
+            model.unpost(c);
+        } else if (data.NEEDS_FIXED_BED[need] >= 0) {
+            throw new IllegalArgumentException("Need " + need + " is fixed in the crop calendar");
+        }
+    }
+
+    /**
+     * Forbid a bed to a crop.
+     */
+    public void forbidBed(int need, int bed) {
+        prepareEdit();
+        releaseSymmetries(need);
+        Map<Integer, Constraint> forbidden = forbiddenBedEdits.computeIfAbsent(need, k -> new HashMap<>());
+        if (!forbidden.containsKey(bed)) {
+            Constraint c = model.arithm(assignment[need], "!=", bed);
+            c.post();
+            forbidden.put(bed, c);
+        }
+    }
+
+    /**
+     * Allow again a bed forbidden by {@link #forbidBed}.
+     */
+    public void allowBed(int need, int bed) {
+        prepareEdit();
+        Constraint c = forbiddenBedEdits.getOrDefault(need, Collections.emptyMap()).get(bed);
+        if (c != null) {
+            model.unpost(c);
+            forbiddenBedEdits.get(need).remove(bed);
+        }
+    }
+
+    /**
+     * Change the weeks of a crop. Only the constraints involving this crop are replaced: the no-overlap cliques
+     * containing it are split into the clique without it plus a difference constraint with each crop it now
+     * overlaps, and so are the pairwise constraints of C2 and C3; the global constraints of C1 and C6 are posted
+     * again. Not available once an objective is set, nor for a crop of a group of identical crops under C5, as
+     * their constraints range over the whole calendar.
+     */
+    public void setNeedWeeks(int need, int begin, int end) {
+        prepareEdit();
+        if (gain != null) {
+            throw new IllegalStateException("The objective depends on the weeks of all the crops, the model must be rebuilt");
+        }
+        if (enabledFamilies.contains("C5") && data.GROUPS.stream().anyMatch(g -> g.contains(need))) {
+            throw new IllegalStateException("Need " + need + " belongs to a group of identical crops, the model must be rebuilt");
+        }
+        releaseSymmetries(need);
+        data = data.withNeedWeeks(need, begin, end);
+        initIntervalGraphs(graphs.withNeedWeeks(data, need));
+
+        List<Constraint> stale = baseConstraints.keySet().stream()
+                .filter(c -> IntStream.of(baseConstraints.get(c)).anyMatch(i -> i == need))
+                .collect(Collectors.toList());
+        model.unpost(stale.toArray(new Constraint[0]));
+        for (Constraint c : stale) {
+            int[] others = IntStream.of(baseConstraints.remove(c)).filter(i -> i != need).toArray();
+            if (others.length > 1) {
+                postNoOverlap(others);
+            }
+        }
+        for (int j : intervalGraph[need]) {
+            postNoOverlap(new int[]{need, j});
         }
+
+        for (String family : new ArrayList<>(constraintFamilies.keySet())) {
+            boolean weekDependent = !family.equals("C4") && !family.equals("C5");
+            if (!weekDependent) {
+                continue;
+            }
+            if (!enabledFamilies.contains(family)) {
+                // Posted again from the new data when enabled
+                constraintFamilies.remove(family);
+            } else if (family.equals("C2") || family.equals("C3")) {
+                List<Constraint> constraints = constraintFamilies.get(family);
+                List<Constraint> involved = constraints.stream().filter(c -> involves(c, assignment[need]))
+                        .collect(Collectors.toList());
+                model.unpost(involved.toArray(new Constraint[0]));
+                constraints.removeAll(involved);
+                constraints.addAll(recordPosted(() -> {
+                    for (int j = 0; j < data.NB_NEEDS; j++) {
+                        if (j == need) {
+                            continue;
+                        }
+                        if (family.equals("C2")) {
+                            postForbidNegativeInteraction(Math.min(need, j), Math.max(need, j));
+                        } else {
+                            postDiluteSpecies(Math.min(need, j), Math.max(need, j));
+                        }
+                    }
+                }));
+            } else {
+                model.unpost(constraintFamilies.remove(family).toArray(new Constraint[0]));
+                enabledFamilies.remove(family);
+                postConstraintFamily(family);
+            }
+        }
+    }
+
+    /**
+     * Solve the problem again after edits, starting from the plan of the previous resolution: each crop first
+     * tries its previous bed.
+     * @param timeout time limit (e.g. 10s), null for no time limit
+     * @return the best solution found, or null
+     */
+    public Solution resolve(String timeout) {
+        prepareEdit();
+        Solver s = model.getSolver();
+        if (lastPlan != null) {
+            Map<IntVar, Integer> index = new IdentityHashMap<>();
+            for (int i = 0; i < assignment.length; i++) {
+                index.put(assignment[i], i);
+            }
+            int[] previous = lastPlan;
+            IntValueSelector warmStart = v -> {
+                Integer i = index.get(v);
+                return i != null && v.contains(previous[i]) ? previous[i] : v.getLB();
+            };
+            s.setSearch(Search.intVarSearch(new DomOverWDegRef<>(assignment, model.getSeed()), warmStart, assignment));
+        } else {
+            s.setSearch(Search.domOverWDegRefSearch(assignment));
+        }
+        if (resolveTimeLimit != null) {
+            s.removeStopCriterion(resolveTimeLimit);
+            resolveTimeLimit = null;
+        }
+        if (timeout != null) {
+            long deadline = System.currentTimeMillis() + TimeUtils.convertInMilliseconds(timeout);
+            resolveTimeLimit = () -> System.currentTimeMillis() > deadline;
+            s.addStopCriterion(resolveTimeLimit);
+        }
+        Solution sol = gain == null ? s.findSolution() : s.findOptimalSolution(gain, true);
+        if (sol != null) {
+            lastPlan = getPlan(sol);
+        }
+        return sol;
+    }
+
+    /**
+     * Bring the solver back to the root node, so that constraints can be posted and removed.
+     */
+    private void prepareEdit() {
+        if (model.getSolver().getSearchState() != SearchState.NEW) {
+            model.getSolver().reset();
+        }
+    }
+
+    /**
+     * Symmetry-breaking constraints involving an edited crop are no longer valid.
+     */
+    private void releaseSymmetries(int need) {
+        releaseBedSymmetries();
+        if (releasedCrops.add(need)) {
+            breakSymmetries(cropSymmetryGroups);
+        }
+    }
+
+    /**
+     * Bed symmetry-breaking constraints were computed from the model before an edit, and are no longer valid after
+     * it: they are removed before the edit is posted, and not posted again.
+     */
+    private void releaseBedSymmetries() {
+        edited = true;
+        unpostBedSymmetries();
+    }
+
+    private static boolean involves(Constraint c, IntVar var) {
+        return Arrays.stream(c.getPropagators()).anyMatch(p -> Arrays.asList(p.getVars()).contains(var));
     }
 
     public Data getData() {
@@ -634,6 +1175,74 @@ public class AgroEcoPlanProblem {
         this.gain = gain;
     }
 
+    /**
+     * Define the gain as first * (ub(second) + 1) + second: maximizing it maximizes the first objective, then the
+     * second one among the plans optimal for the first. Any bound on the gain is thus a bound on the first objective,
+     * and the search continues into the second objective without restarting.
+     * @return the gain
+     * @throws AgroecoplanException if the bounds of the gain exceed the range of integers
+     */
+    public IntVar setLexicographicGain(IntVar first, IntVar second) throws AgroecoplanException {
+        int lb;
+        int ub;
+        int weight;
+        try {
+            weight = Math.addExact(second.getUB(), 1);
+            lb = Math.addExact(Math.multiplyExact(first.getLB(), weight), second.getLB());
+            ub = Math.addExact(Math.multiplyExact(first.getUB(), weight), second.getUB());
+        } catch (ArithmeticException e) {
+            throw new AgroecoplanException("The lexicographic gain overflows: " + first.getName() + " in ["
+                    + first.getLB() + ", " + first.getUB() + "] and " + second.getName() + " in ["
+                    + second.getLB() + ", " + second.getUB() + "]");
+        }
+        this.lexicographicWeight = weight;
+        IntVar lex = model.intVar("lexicographic", lb, ub);
+        model.scalar(new IntVar[]{first, second}, new int[]{weight, 1}, "=", lex).post();
+        this.gain = lex;
+        this.lexicographicObjectives = new IntVar[]{first, second};
+        return lex;
+    }
+
+    /**
+     * @return the objectives combined in a lexicographic gain, by decreasing priority, or null
+     */
+    public IntVar[] getLexicographicObjectives() {
+        return lexicographicObjectives;
+    }
+
+    /**
+     * @return the values of the objectives combined in a value of the lexicographic gain, by decreasing priority
+     */
+    public int[] decodeLexicographicGain(int value) {
+        return new int[]{value / lexicographicWeight, value % lexicographicWeight};
+    }
+
+    /**
+     * @return the label of each constraint of the model: "base" for the no-overlap constraints, the constraint
+     * family (C1 to C6), the objective (O1, O2), "symmetry" for symmetry-breaking constraints, or "other"
+     */
+    public Map<Constraint, String> getConstraintLabels() {
+        Map<Constraint, String> labels = new IdentityHashMap<>();
+        for (Constraint c : model.getCstrs()) {
+            labels.put(c, "other");
+        }
+        // Only posted constraints are labelled: disabled families and released symmetries are ignored
+        baseConstraints.keySet().forEach(c -> labels.replace(c, "base"));
+        constraintFamilies.forEach((family, constraints) -> constraints.forEach(c -> labels.replace(c, family)));
+        objectiveConstraints.forEach((objective, constraints) -> constraints.forEach(c -> labels.replace(c, objective)));
+        bedSymmetryConstraints.forEach(c -> labels.replace(c, "symmetry"));
+        cropSymmetryConstraints.forEach(c -> labels.replace(c, "symmetry"));
+        return labels;
+    }
+
+    /**
+     * @return for each constraint family (C1 to C6) and objective (O1, O2) posted, the number of variables created,
+     * of boolean variables among them (e.g. reifications), and of table tuples
+     */
+    public Map<String, long[]> getPostedSizes() {
+        return Collections.unmodifiableMap(postedSizes);
+    }
+
 
     public IntVar getNbBeds() {
         return nbBeds;
@@ -658,24 +1267,34 @@ public class AgroEcoPlanProblem {
         System.out.println("NEEDS DELAY = " + Arrays.toString(data.NEEDS_RETURN_DELAY));
         System.out.println("NEEDS NB FORBIDDEN BEDS = "
                 + Arrays.toString(Arrays.stream(data.NEEDS_FORBIDDEN_BEDS).mapToInt(v -> v.size()).toArray()));
+        System.out.println("NB GROUPS OF INTERCHANGEABLE NEEDS = " + data.SYMMETRIC_GROUPS.size());
         System.out.println("NB MAX BEDS = " + nbMaxBeds);
 
     }
 
     public String[] getReadableSolution(Solution solution) {
-        int maxWeek = Arrays.stream(data.NEEDS_END).max().getAsInt();
+        return getReadableSolution(data, nbMaxBeds, getPlan(solution));
+    }
+
+    public String[][] getCsvSolution(Solution solution) {
+        return getCsvSolution(data, nbMaxBeds, getPlan(solution));
+    }
+
+    /**
+     * @return the bed assigned to each need in the solution.
+     */
+    public int[] getPlan(Solution solution) {
+        return Arrays.stream(assignment).mapToInt(solution::getIntVal).toArray();
+    }
+
+    public static String[] getReadableSolution(Data data, int nbMaxBeds, int[] plan) {
+        BedTimelines timelines = new BedTimelines(data, nbMaxBeds, plan);
         String[] sol = new String[nbMaxBeds];
         for (int i = 1; i < nbMaxBeds + 1; i++) {
-            int finalI = i;
-            Integer[] needs = IntStream.range(0, assignment.length)
-                    .filter(v -> solution.getIntVal(assignment[v]) == finalI)
-                    .mapToObj(v -> v)
-                    .toArray(Integer[]::new);
-            Arrays.sort(needs, (a, b) -> data.NEEDS_BEGIN[a] - data.NEEDS_BEGIN[b]);
             StringBuilder stringBuilder = new StringBuilder();
             stringBuilder.append("Planche " + i + ": ");
-            for (int k = 0; k < needs.length; k++) {
-                int crop = needs[k];
+            for (int k = 0; k < timelines.size(i); k++) {
+                int crop = timelines.getNeed(i, k);
                 if (k > 0) {
                     stringBuilder.append("--");
                 }
@@ -687,22 +1306,19 @@ public class AgroEcoPlanProblem {
         return sol;
     }
 
-    public String[][] getCsvSolution(Solution solution) {
-        int maxWeek = Arrays.stream(data.NEEDS_END).max().getAsInt();
+    public static String[][] getCsvSolution(Data data, int nbMaxBeds, int[] plan) {
+        BedTimelines timelines = new BedTimelines(data, nbMaxBeds, plan);
+        int maxWeek = timelines.getMaxWeek();
         String[][] sol = new String[nbMaxBeds][];
         for (int i = 1; i < nbMaxBeds + 1; i++) {
-            int finalI = i;
-            int[] needs = IntStream.range(0, assignment.length)
-                    .filter(v -> solution.getIntVal(assignment[v]) == finalI)
-                    .toArray();
             String[] row = new String[maxWeek + 1];
             row[0] = "Planche " + i;
-            for (int j = 1; j < maxWeek + 1; j++) {
-                row[j] = "";
-            }
-            for (int n : needs) {
-                for (int w = data.NEEDS_BEGIN[n]; w <= data.NEEDS_END[n]; w++) {
-                    row[w] = "" + n;
+            Arrays.fill(row, 1, maxWeek + 1, "");
+            for (int k = 0; k < timelines.size(i); k++) {
+                int n = timelines.getNeed(i, k);
+                String need = String.valueOf(n);
+                for (int w = Math.max(1, data.NEEDS_BEGIN[n]); w <= data.NEEDS_END[n]; w++) {
+                    row[w] = need;
                 }
             }
             sol[i - 1] = row;
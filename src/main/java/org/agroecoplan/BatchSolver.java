@@ -0,0 +1,258 @@
+package org.agroecoplan;
+
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.CSVWriter;
+import com.opencsv.CSVWriterBuilder;
+import com.opencsv.exceptions.CsvException;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Solve many instances in a single JVM. Jobs are described in a manifest (CSV file with ';' as separator, and
+ * lines starting with # ignored) whose header gives the columns: name, needs, beds, interactions, precedences,
+ * delays, constraints (comma-separated), objective, timeout, cores, and optionally minO1 and minO2. Relative paths
+ * are resolved from the directory of the manifest, and job names must be unique. A job with more than one core is
+ * solved with a parallel portfolio, of at most as many threads as the cores of the batch.
+ * Jobs run concurrently as long as their cores are available: they are started biggest first by a single dispatcher,
+ * which waits for the cores of a job before starting it on a pool of as many threads as cores. Instances shared by
+ * several jobs are only loaded once, and the plan of each job is written to the output directory, along with a
+ * summary of all jobs.
+ */
+@CommandLine.Command(
+        name = "batch",
+        description = "Solve the instances listed in a manifest"
+)
+public class BatchSolver implements Runnable {
+
+    @CommandLine.Parameters(
+            description = "Path of the manifest (CSV file describing one job per line)"
+    )
+    String manifest;
+
+    @CommandLine.Parameters(
+            description = "Output directory"
+    )
+    String outputDir;
+
+    @CommandLine.Option(
+            names = {"-c", "--cores"},
+            description = "Number of cores shared by the jobs (default: all available cores)",
+            defaultValue = "0"
+    )
+    int nbCores;
+
+    @CommandLine.Option(
+            names = {"-pre", "--presolve"},
+            description = "If true, presolve each instance before building its model",
+            defaultValue = "false"
+    )
+    boolean presolve;
+
+    private final Map<String, Data> dataCache = new ConcurrentHashMap<>();
+
+    static class Job {
+        String name;
+        String needs;
+        String beds;
+        String interactions;
+        String precedences;
+        String delays;
+        String[] constraints;
+        String objective;
+        String timeout;
+        int cores;
+        int minO1;
+        int minO2;
+    }
+
+    static class JobResult {
+        String status;
+        Integer objective;
+        long timeMs;
+    }
+
+    @Override
+    public void run() {
+        int totalCores = nbCores > 0 ? nbCores : Runtime.getRuntime().availableProcessors();
+        List<Job> jobs;
+        try {
+            jobs = readManifest(manifest);
+        } catch (IOException | CsvException e) {
+            throw new RuntimeException(e);
+        }
+        new File(outputDir).mkdirs();
+        // Biggest jobs first, each one waiting for its cores, so that portfolio jobs are not starved by sequential ones
+        List<Job> ordered = new ArrayList<>(jobs);
+        ordered.sort(Comparator.comparingInt((Job j) -> -j.cores));
+        Semaphore cores = new Semaphore(totalCores);
+        ExecutorService executor = Executors.newFixedThreadPool(totalCores);
+        Map<Job, Future<JobResult>> futures = new HashMap<>();
+        List<String[]> summary = new ArrayList<>();
+        summary.add(new String[]{"name", "status", "objective", "time_ms", "cores"});
+        try {
+            for (Job job : ordered) {
+                int permits = Math.max(1, Math.min(job.cores, totalCores));
+                cores.acquire(permits);
+                futures.put(job, executor.submit(() -> {
+                    try {
+                        return solveJob(job, permits);
+                    } finally {
+                        cores.release(permits);
+                    }
+                }));
+            }
+            for (Job job : jobs) {
+                JobResult result;
+                try {
+                    result = futures.get(job).get();
+                } catch (ExecutionException e) {
+                    result = new JobResult();
+                    result.status = "ERROR: " + e.getCause().getMessage();
+                }
+                summary.add(new String[]{job.name, result.status,
+                        result.objective == null ? "" : String.valueOf(result.objective),
+                        String.valueOf(result.timeMs), String.valueOf(job.cores)});
+                System.out.println(job.name + ": " + result.status
+                        + (result.objective == null ? "" : " (" + result.objective + ")"));
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+        writeCsv(new File(outputDir, "summary.csv").getPath(), summary.toArray(new String[0][]));
+        System.out.println("Summary exported at: " + new File(outputDir, "summary.csv").getPath());
+    }
+
+    /**
+     * Solve a job with the given number of cores, its own number of cores capped by the cores of the batch.
+     */
+    private JobResult solveJob(Job job, int nbCores) {
+        long start = System.currentTimeMillis();
+        Data data = getData(job);
+        SolverConfiguration config = new SolverConfiguration(job.constraints, job.objective, job.timeout);
+        config.setMinO1(job.minO1);
+        config.setMinO2(job.minO2);
+        if (nbCores > 1) {
+            config.setParallel(nbCores);
+        }
+        JobResult jobResult = new JobResult();
+        Presolve pre = null;
+        Data solvedData = data;
+        if (presolve) {
+            pre = new Presolve(data, config);
+            if (pre.run() == Presolve.Verdict.INFEASIBLE) {
+                jobResult.status = "NO SOLUTION";
+                jobResult.timeMs = System.currentTimeMillis() - start;
+                return jobResult;
+            }
+            solvedData = pre.getReducedData();
+        }
+        SolverConfiguration.Result result = config.solve(solvedData);
+        jobResult.timeMs = System.currentTimeMillis() - start;
+        if (result.getPlan() == null) {
+            jobResult.status = "NO SOLUTION";
+            return jobResult;
+        }
+        int[] plan = pre == null ? result.getPlan() : pre.restore(result.getPlan());
+        jobResult.status = "SOLVED";
+        jobResult.objective = result.getObjectiveValue();
+        new PlanExporter(data, data.NB_BEDS, plan).write(new File(outputDir, job.name + ".csv").getPath());
+        return jobResult;
+    }
+
+    /**
+     * @return the instance of a job, loaded only once for all the jobs sharing it
+     */
+    private Data getData(Job job) {
+        String key = String.join(";", job.needs, job.interactions, job.beds,
+                String.valueOf(job.precedences), String.valueOf(job.delays));
+        return dataCache.computeIfAbsent(key, k -> {
+            try {
+                return new Data(job.needs, job.interactions, job.beds, job.precedences, job.delays);
+            } catch (IOException | CsvException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    static List<Job> readManifest(String manifest) throws IOException, CsvException {
+        File directory = new File(manifest).getAbsoluteFile().getParentFile();
+        CSVParser csvParser = new CSVParserBuilder().withSeparator(';').withIgnoreQuotations(true).build();
+        List<String[]> rows;
+        try (CSVReader reader = new CSVReaderBuilder(new FileReader(manifest)).withCSVParser(csvParser).build()) {
+            rows = reader.readAll();
+        }
+        rows.removeIf(row -> row.length == 0 || row[0].startsWith("#") || (row.length == 1 && row[0].isEmpty()));
+        List<String> header = Arrays.asList(rows.get(0));
+        List<Job> jobs = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (String[] row : rows.subList(1, rows.size())) {
+            Job job = new Job();
+            job.name = column(row, header, "name", "job" + jobs.size());
+            if (!names.add(job.name)) {
+                // The plans of the jobs are exported under their name
+                throw new IllegalArgumentException("Duplicate job name in " + manifest + ": " + job.name);
+            }
+            job.needs = resolve(directory, column(row, header, "needs", null));
+            job.beds = resolve(directory, column(row, header, "beds", null));
+            job.interactions = resolve(directory, column(row, header, "interactions", null));
+            job.precedences = resolve(directory, column(row, header, "precedences", null));
+            job.delays = resolve(directory, column(row, header, "delays", null));
+            job.constraints = column(row, header, "constraints", "").split(",");
+            job.objective = column(row, header, "objective", "SAT");
+            job.timeout = column(row, header, "timeout", "1m");
+            job.cores = Integer.parseInt(column(row, header, "cores", "1"));
+            job.minO1 = Integer.parseInt(column(row, header, "minO1", "0"));
+            job.minO2 = Integer.parseInt(column(row, header, "minO2", "0"));
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    private static String column(String[] row, List<String> header, String name, String defaultValue) {
+        int col = header.indexOf(name);
+        if (col < 0 || col >= row.length || row[col].isEmpty()) {
+            return defaultValue;
+        }
+        return row[col];
+    }
+
+    private static String resolve(File directory, String path) {
+        if (path == null || new File(path).isAbsolute()) {
+            return path;
+        }
+        return new File(directory, path).getPath();
+    }
+
+    private static void writeCsv(String path, String[][] rows) {
+        try (CSVWriter writer = (CSVWriter) new CSVWriterBuilder(new FileWriter(path)).withSeparator(';').build()) {
+            for (String[] row : rows) {
+                writer.writeNext(row, false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.util.objects.setDataStructures.ISet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BedSymmetryUtils {
+
+    /**
+     * Find classes of interchangeable beds, i.e. beds such that swapping any two of them maps every solution to
+     * another solution. Two beds are interchangeable when they belong to the same domains (which accounts for
+     * forbidden and fixed beds) and when they are twins in the adjacency graph: same neighbours, apart from each
+     * other. Twins are the automorphisms of the adjacency graph that can be detected cheaply. If some constraint
+     * relies on the numbering of beds (i.e. |a - b| = 1 as adjacency), beds must also be twins in the path graph
+     * induced by the numbering.
+     * @param assignment assignment variables, with their initial domains
+     * @param adjacency adjacency of beds, indexed from 1
+     * @param nbBeds number of beds
+     * @param withBedNumbering true if the numbering of beds is also used as an adjacency relation
+     * @return the classes of at least two interchangeable beds, each sorted by increasing bed number
+     */
+    public static List<int[]> findInterchangeableBeds(IntVar[] assignment, ISet[] adjacency, int nbBeds,
+                                                      boolean withBedNumbering) {
+        // 1. Group beds by domain membership signature
+        Map<BitSet, List<Integer>> bySignature = new LinkedHashMap<>();
+        for (int bed = 1; bed <= nbBeds; bed++) {
+            BitSet signature = new BitSet(assignment.length);
+            for (int i = 0; i < assignment.length; i++) {
+                if (assignment[i].contains(bed)) {
+                    signature.set(i);
+                }
+            }
+            bySignature.computeIfAbsent(signature, k -> new ArrayList<>()).add(bed);
+        }
+        // 2. Split groups into classes of pairwise twins
+        boolean[][] inAdjacency = new boolean[nbBeds + 1][];
+        for (int bed = 1; bed <= nbBeds; bed++) {
+            inAdjacency[bed] = new boolean[nbBeds + 1];
+        }
+        for (int bed = 1; bed <= nbBeds; bed++) {
+            for (int other : adjacency[bed]) {
+                if (other >= 1 && other <= nbBeds) {
+                    inAdjacency[other][bed] = true;
+                }
+            }
+        }
+        List<int[]> classes = new ArrayList<>();
+        for (List<Integer> group : bySignature.values()) {
+            if (group.size() < 2) {
+                continue;
+            }
+            List<List<Integer>> groupClasses = new ArrayList<>();
+            for (int bed : group) {
+                List<Integer> joined = null;
+                for (List<Integer> c : groupClasses) {
+                    if (c.stream().allMatch(other -> areTwins(bed, other, adjacency, inAdjacency, nbBeds, withBedNumbering))) {
+                        joined = c;
+                        break;
+                    }
+                }
+                if (joined == null) {
+                    joined = new ArrayList<>();
+                    groupClasses.add(joined);
+                }
+                joined.add(bed);
+            }
+            for (List<Integer> c : groupClasses) {
+                if (c.size() >= 2) {
+                    int[] beds = c.stream().mapToInt(v -> v).toArray();
+                    Arrays.sort(beds);
+                    classes.add(beds);
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Return true iff swapping beds a and b preserves the (possibly directed) adjacency relation, and the numbering
+     * adjacency if required.
+     */
+    static boolean areTwins(int a, int b, ISet[] adjacency, boolean[][] inAdjacency, int nbBeds, boolean withBedNumbering) {
+        if (adjacency[a].contains(b) != adjacency[b].contains(a)) {
+            return false;
+        }
+        for (int x = 1; x <= nbBeds; x++) {
+            if (x == a || x == b) {
+                continue;
+            }
+            if (adjacency[a].contains(x) != adjacency[b].contains(x) || inAdjacency[a][x] != inAdjacency[b][x]) {
+                return false;
+            }
+            if (withBedNumbering && (Math.abs(a - x) == 1) != (Math.abs(b - x) == 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+package org.agroecoplan;
+
+/**
+ * Inverse of a plan: the needs cultivated on each bed, by increasing beginning week. It is computed in one pass over
+ * the plan (a counting sort of the needs by bed), instead of scanning all the needs for each bed.
+ */
+public class BedTimelines {
+
+    private final Data data;
+    private final int nbBeds;
+    private final int maxWeek;
+    // Needs of bed b (numbered from 1) are needs[start[b - 1]] .. needs[start[b] - 1]
+    private final int[] start;
+    private final int[] needs;
+
+    /**
+     * @param nbBeds number of beds, numbered from 1 in the plan
+     * @param plan   the bed of each need
+     */
+    public BedTimelines(Data data, int nbBeds, int[] plan) {
+        this.data = data;
+        this.nbBeds = nbBeds;
+        int max = 0;
+        for (int w : data.NEEDS_END) {
+            max = Math.max(max, w);
+        }
+        this.maxWeek = max;
+        this.start = new int[nbBeds + 1];
+        for (int bed : plan) {
+            if (bed < 1 || bed > nbBeds) {
+                throw new IllegalArgumentException("Bed " + bed + " is not between 1 and " + nbBeds);
+            }
+            start[bed]++;
+        }
+        for (int b = 1; b <= nbBeds; b++) {
+            start[b] += start[b - 1];
+        }
+        this.needs = new int[plan.length];
+        int[] next = new int[nbBeds];
+        System.arraycopy(start, 0, next, 0, nbBeds);
+        // Needs are visited by increasing index: within a bed, sorting by beginning week is stable
+        for (int i = 0; i < plan.length; i++) {
+            needs[next[plan[i] - 1]++] = i;
+        }
+        for (int b = 0; b < nbBeds; b++) {
+            sortByBegin(start[b], start[b + 1]);
+        }
+    }
+
+    private void sortByBegin(int from, int to) {
+        // Few needs share a bed: insertion sort
+        for (int k = from + 1; k < to; k++) {
+            int need = needs[k];
+            int j = k - 1;
+            while (j >= from && data.NEEDS_BEGIN[needs[j]] > data.NEEDS_BEGIN[need]) {
+                needs[j + 1] = needs[j];
+                j--;
+            }
+            needs[j + 1] = need;
+        }
+    }
+
+    public Data getData() {
+        return data;
+    }
+
+    public int getNbBeds() {
+        return nbBeds;
+    }
+
+    /**
+     * @return the last week of the calendar
+     */
+    public int getMaxWeek() {
+        return maxWeek;
+    }
+
+    /**
+     * @return the number of needs cultivated on a bed
+     */
+    public int size(int bed) {
+        return start[bed] - start[bed - 1];
+    }
+
+    /**
+     * @param k index of the need on the bed, from 0 to size(bed) - 1, by increasing beginning week
+     */
+    public int getNeed(int bed, int k) {
+        return needs[start[bed - 1] + k];
+    }
+
+    /**
+     * @return the needs cultivated on a bed, by increasing beginning week
+     */
+    public int[] getNeeds(int bed) {
+        int[] bedNeeds = new int[size(bed)];
+        System.arraycopy(needs, start[bed - 1], bedNeeds, 0, bedNeeds.length);
+        return bedNeeds;
+    }
+}
@@ -0,0 +1,203 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * State of a long optimization, saved periodically to a properties file so that the search can be resumed after
+ * the process was stopped: the best plan, its objective value (a lower bound of the optimum), the elapsed time, and
+ * the statistics of each search worker (nodes, fails, solutions and restarts). The key of the instance and
+ * configuration (see {@link ResultCache#key}) is saved too, so that a checkpoint is not applied to another problem.
+ * Nogoods recorded by the workers are not saved: they are only valid with the search state they were learnt in.
+ */
+public class Checkpoint {
+
+    private static final String KEY = "key";
+    private static final String PLAN = "plan";
+    private static final String OBJECTIVE = "objective";
+    private static final String TIME = "time_ms";
+    private static final String WORKERS = "workers";
+    private static final String WORKER = "worker.";
+
+    private final String key;
+    private int[] plan;
+    private Integer objective;
+    private long timeMs;
+    private long[][] workerStats = new long[0][];
+
+    public Checkpoint(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public synchronized int[] getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return the value of the best plan, null for satisfaction or if there is no plan yet
+     */
+    public synchronized Integer getObjective() {
+        return objective;
+    }
+
+    /**
+     * @return the search time accumulated by the previous runs, in milliseconds
+     */
+    public synchronized long getTimeMs() {
+        return timeMs;
+    }
+
+    /**
+     * @return for each worker, its number of nodes, fails, solutions and restarts
+     */
+    public synchronized long[][] getWorkerStats() {
+        return workerStats;
+    }
+
+    /**
+     * Record a new best plan.
+     */
+    public synchronized void update(int[] plan, Integer objective) {
+        if (objective != null && this.objective != null && objective <= this.objective) {
+            return;
+        }
+        this.plan = plan.clone();
+        this.objective = objective;
+    }
+
+    /**
+     * Record the statistics of the workers, with the time accumulated before they started.
+     */
+    synchronized void updateStats(List<Model> models, long previousTimeMs) {
+        workerStats = new long[models.size()][];
+        long time = 0;
+        for (int w = 0; w < models.size(); w++) {
+            Solver s = models.get(w).getSolver();
+            workerStats[w] = new long[]{s.getNodeCount(), s.getFailCount(), s.getSolutionCount(), s.getRestartCount()};
+            time = Math.max(time, (long) (s.getTimeCount() * 1000));
+        }
+        timeMs = previousTimeMs + time;
+    }
+
+    /**
+     * Write the checkpoint, replacing the previous one atomically.
+     */
+    public synchronized void write(String path) {
+        Properties properties = new Properties();
+        properties.setProperty(KEY, key);
+        if (plan != null) {
+            properties.setProperty(PLAN, Arrays.stream(plan).mapToObj(String::valueOf).collect(Collectors.joining(",")));
+        }
+        if (objective != null) {
+            properties.setProperty(OBJECTIVE, String.valueOf(objective));
+        }
+        properties.setProperty(TIME, String.valueOf(timeMs));
+        properties.setProperty(WORKERS, String.valueOf(workerStats.length));
+        for (int w = 0; w < workerStats.length; w++) {
+            properties.setProperty(WORKER + w, Arrays.stream(workerStats[w]).mapToObj(String::valueOf)
+                    .collect(Collectors.joining(",")));
+        }
+        File file = new File(path).getAbsoluteFile();
+        try {
+            File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                properties.store(out, "nodes,fails,solutions,restarts per worker");
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the checkpoint saved at the given path, or null if there is none
+     */
+    public static Checkpoint read(String path) {
+        if (!new File(path).exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(path)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Checkpoint checkpoint = new Checkpoint(properties.getProperty(KEY, ""));
+        String plan = properties.getProperty(PLAN);
+        if (plan != null) {
+            checkpoint.plan = plan.isEmpty() ? new int[0]
+                    : Arrays.stream(plan.split(",")).mapToInt(Integer::parseInt).toArray();
+        }
+        String objective = properties.getProperty(OBJECTIVE);
+        checkpoint.objective = objective == null ? null : Integer.valueOf(objective);
+        checkpoint.timeMs = Long.parseLong(properties.getProperty(TIME, "0"));
+        int nbWorkers = Integer.parseInt(properties.getProperty(WORKERS, "0"));
+        checkpoint.workerStats = new long[nbWorkers][];
+        for (int w = 0; w < nbWorkers; w++) {
+            checkpoint.workerStats[w] = Arrays.stream(properties.getProperty(WORKER + w).split(","))
+                    .mapToLong(Long::parseLong).toArray();
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Writes a checkpoint periodically while the given models are solved, and a last time when closed.
+     */
+    static class Writer implements AutoCloseable {
+
+        private final Checkpoint checkpoint;
+        private final String path;
+        private final List<Model> models;
+        private final long previousTimeMs;
+        private final ScheduledExecutorService scheduler;
+
+        Writer(Checkpoint checkpoint, String path, long periodMs, List<Model> models) {
+            this.checkpoint = checkpoint;
+            this.path = path;
+            this.models = models;
+            this.previousTimeMs = checkpoint.getTimeMs();
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleAtFixedRate(this::save, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        }
+
+        private void save() {
+            checkpoint.updateStats(models, previousTimeMs);
+            checkpoint.write(path);
+        }
+
+        @Override
+        public void close() {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            save();
+        }
+    }
+}
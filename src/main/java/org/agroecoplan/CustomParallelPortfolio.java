@@ -147,6 +147,22 @@ public class CustomParallelPortfolio {
     private final AtomicBoolean solutionFound = new AtomicBoolean(false);
     private final AtomicInteger solverRunning = new AtomicInteger(0);
 
+    /**
+     * Set when the resolution must stop for good, e.g. on request of a remote coordinator
+     */
+    private final AtomicBoolean stopRequested = new AtomicBoolean(false);
+
+    /**
+     * Index of the first search configuration used by this portfolio, so that several portfolios working on the
+     * same problem use different configurations
+     */
+    private int configurationOffset = 0;
+
+    /**
+     * Called with the problem of the finder model each time a new (best) solution is found
+     */
+    private Consumer<AgroEcoPlanProblem> solutionListener = null;
+
     /**
      * Point to (one of) the solver(s) which found a solution
      */
@@ -184,6 +200,35 @@ public class CustomParallelPortfolio {
     ///////////////////////////////////////          API          //////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Use search configurations starting from the given index, instead of 0.
+     */
+    public void setConfigurationOffset(int configurationOffset) {
+        this.configurationOffset = configurationOffset;
+    }
+
+    /**
+     * Register a listener called each time a new (best) solution is found, while the variables of the finder
+     * model are instantiated. The listener is called from the solver threads.
+     */
+    public void setSolutionListener(Consumer<AgroEcoPlanProblem> solutionListener) {
+        this.solutionListener = solutionListener;
+    }
+
+    /**
+     * Share an objective value found outside this portfolio: every model will only look for better solutions.
+     */
+    public synchronized void updateBound(int value) {
+        models.forEach(m -> m.getSolver().getObjectiveManager().updateBestSolution(value));
+    }
+
+    /**
+     * Stop the current and any further resolution.
+     */
+    public void stop() {
+        stopRequested.set(true);
+    }
+
     /**
      * Calling this method will ensure that workers equipped with a restart policy not only
      * record nogoods from themselves (based on {@link NogoodFromRestarts}) but also based on
@@ -272,6 +317,9 @@ public class CustomParallelPortfolio {
      * @throws SolverException if no model or only model has been added.
      */
     public boolean solve() {
+        if (stopRequested.get()) {
+            return false;
+        }
         getSolverTerminated().set(false);
         getSolutionFound().set(false);
         getSolverRunning().set(models.size());
@@ -394,21 +442,37 @@ public class CustomParallelPortfolio {
         return StreamSupport.stream(it, false);
     }
 
+    /**
+     * Attempts to find all solutions of the declared problem, like {@link #streamSolutions()}, but only records the
+     * assignment and the objective of each solution in the given sink, which bounds the memory used.
+     *
+     * @return the sink
+     */
+    public SolutionSink collectSolutions(SolutionSink sink) {
+        while (solve()) {
+            sink.record(finderProblem);
+        }
+        return sink;
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     ///////////////////////////////////////   INTERNAL METHODS    //////////////////////////////////////////////////////
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     public void prepare() {
-        isPrepared = true;
-        check();
-        for (int i = 0; i < models.size(); i++) {
-            Solver s = models.get(i).getSolver();
-            AgroEcoPlanProblem p = problems.get(i);
-            s.addStopCriterion(() -> getSolverTerminated().get());
-            s.plugMonitor((IMonitorSolution) () -> updateFromSolution(s.getModel(), p));
-            if (searchAutoConf) {
-                configureModel(i);
+        try (Phases.Phase phase = Phases.start("portfolio")) {
+            isPrepared = true;
+            check();
+            for (int i = 0; i < models.size(); i++) {
+                Solver s = models.get(i).getSolver();
+                AgroEcoPlanProblem p = problems.get(i);
+                s.addStopCriterion(() -> getSolverTerminated().get() || stopRequested.get());
+                s.plugMonitor((IMonitorSolution) () -> updateFromSolution(s.getModel(), p));
+                if (searchAutoConf) {
+                    configureModel(i);
+                }
             }
+            phase.setSize(models.size());
         }
     }
 
@@ -417,6 +481,9 @@ public class CustomParallelPortfolio {
             finder = m;
             finderProblem = p;
             getSolutionFound().set(true);
+            if (solutionListener != null) {
+                solutionListener.accept(p);
+            }
         } else {
             int solverVal = ((IntVar) m.getObjective()).getValue();
             int bestVal = m.getSolver().getObjectiveManager().getBestSolutionValue().intValue();
@@ -430,13 +497,17 @@ public class CustomParallelPortfolio {
                 finder = m;
                 finderProblem = p;
                 models.forEach(s1 -> s1.getSolver().getObjectiveManager().updateBestSolution(bestVal));
+                if (solutionListener != null) {
+                    solutionListener.accept(p);
+                }
             }
         }
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
-    private void configureModel(int workerID) {
-        Model worker = getModels().get(workerID);
+    private void configureModel(int modelIndex) {
+        Model worker = getModels().get(modelIndex);
+        int workerID = modelIndex + configurationOffset;
         Solver solver = worker.getSolver();
         ResolutionPolicy policy = worker.getResolutionPolicy();
 
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.IntStream;
@@ -40,6 +41,7 @@ public class Data {
 	static final int COL_FIXED_BED = 18;
 
 	static final int COL_ADJACENT_BEDS = 1;
+	static final String HEADER_GARDENS = "jardins";
 
 	// Columns precedence file
 
@@ -71,6 +73,12 @@ public class Data {
 	 * Groups of identical needs (e.g. 5 tomatoes)
 	 */
 	List<ISet> GROUPS;
+	/**
+	 * Groups of interchangeable needs across the whole calendar, i.e. needs with the same species, family, return
+	 * delay, cultivation period and forbidden beds, and no fixed bed (e.g. the same planting split into several rows).
+	 * Groups contain at least two needs, in increasing order.
+	 */
+	List<ISet> SYMMETRIC_GROUPS;
 	/**
 	 * If specified in the input, some needs can be assigned a fixed bed.
 	 * If so, the index of the bed is specified here, otherwise set to -1.
@@ -80,6 +88,13 @@ public class Data {
 	int NB_BEDS;
 	ISet[] ADJACENCY;
 
+	/**
+	 * Names of the gardens, and garden of each bed (indexed from 1). If the beds file has no "jardins" column,
+	 * all beds belong to a single unnamed garden.
+	 */
+	String[] GARDENS;
+	int[] BEDS_GARDEN;
+
 	public Data() throws IOException, CsvException {
 		this(Data.class.getClassLoader().getResource("besoinsreelsPetC_v7_1an.csv").getPath(),
 				Data.class.getClassLoader().getResource("interactionscategoriespaut.csv").getPath(),
@@ -111,7 +126,13 @@ public class Data {
 		this.BEDS_FILE = beds;
 		this.PRECEDENCE_FILE = precedences;
 		this.DELAYS_FILE = delays;
+		try (Phases.Phase phase = Phases.start("parse")) {
+			parse();
+			phase.setSize(NB_NEEDS);
+		}
+	}
 
+	private void parse() throws IOException, CsvException {
 		CSVParser csvParser = new CSVParserBuilder().withSeparator(';').withIgnoreQuotations(true).build();
 
 		// Get beds and construct adjacency
@@ -120,6 +141,12 @@ public class Data {
 		List<String[]> dataBeds = readerBeds.readAll();
 		this.NB_BEDS = dataBeds.size();
 		this.ADJACENCY = new ISet[dataBeds.size() + 1];
+		CSVReader readerBedsHeader = new CSVReaderBuilder(new FileReader(BEDS_FILE)).withSkipLines(count_comment_lines(BEDS_FILE))
+				.withCSVParser(csvParser).build();
+		int colGardens = Arrays.asList(readerBedsHeader.readNext()).indexOf(HEADER_GARDENS);
+		readerBedsHeader.close();
+		Map<String, Integer> gardenToId = new LinkedHashMap<>();
+		this.BEDS_GARDEN = new int[NB_BEDS + 1];
 		for (int i = 1; i <= NB_BEDS; i++) {
 			String[] row = dataBeds.get(i - 1);
 			int[] adj;
@@ -131,7 +158,10 @@ public class Data {
 						.toArray();
 			}
 			this.ADJACENCY[i] = SetFactory.makeConstantSet(adj);
+			String garden = (colGardens >= 0 && colGardens < row.length) ? row[colGardens] : "";
+			BEDS_GARDEN[i] = gardenToId.computeIfAbsent(garden, k -> gardenToId.size());
 		}
+		this.GARDENS = gardenToId.keySet().toArray(new String[0]);
 
 		// Get interactions and species list
 		CSVReader readerInteractions = new CSVReaderBuilder(new FileReader(INTERACTIONS_FILE))
@@ -156,7 +186,7 @@ public class Data {
 			}).toArray();
 		}
 		// If given, get precedences
-		if (precedences != null) {
+		if (PRECEDENCE_FILE != null) {
 			this.PRECEDENCES = new int[NB_SPECIES][NB_SPECIES];
 			CSVReader readerPrecedences = new CSVReaderBuilder(new FileReader(PRECEDENCE_FILE))
 					.withSkipLines(count_comment_lines(PRECEDENCE_FILE) + 1)
@@ -173,7 +203,7 @@ public class Data {
 			}
 		}
 		// If given, get delays
-		if (delays != null) {
+		if (DELAYS_FILE != null) {
 			this.DELAYS = new int[NB_SPECIES][NB_SPECIES];
 			CSVReader readerPrecedences = new CSVReaderBuilder(new FileReader(DELAYS_FILE))
 					.withSkipLines(count_comment_lines(DELAYS_FILE) + 1)
@@ -255,5 +285,211 @@ public class Data {
 			}
 			offset += quantity - 1;
 		}
+		this.SYMMETRIC_GROUPS = findSymmetricGroups();
+	}
+
+	/**
+	 * Copy the file names, species and beds data of another instance, needs are left empty.
+	 */
+	private Data(Data source) {
+		this.NEEDS_FILE = source.NEEDS_FILE;
+		this.INTERACTIONS_FILE = source.INTERACTIONS_FILE;
+		this.PRECEDENCE_FILE = source.PRECEDENCE_FILE;
+		this.DELAYS_FILE = source.DELAYS_FILE;
+		this.BEDS_FILE = source.BEDS_FILE;
+		this.SPECIES_TO_ID = source.SPECIES_TO_ID;
+		this.NB_SPECIES = source.NB_SPECIES;
+		this.SPECIES = source.SPECIES;
+		this.INTERACTIONS = source.INTERACTIONS;
+		this.PRECEDENCES = source.PRECEDENCES;
+		this.DELAYS = source.DELAYS;
+		this.NB_BEDS = source.NB_BEDS;
+		this.ADJACENCY = source.ADJACENCY;
+		this.GARDENS = source.GARDENS;
+		this.BEDS_GARDEN = source.BEDS_GARDEN;
+	}
+
+	/**
+	 * Build an instance restricted to a subset of the needs, renumbered from 0 in the given order. Groups of
+	 * identical needs are restricted to the kept needs, species and beds data are shared with this instance.
+	 * @param needs indices of the kept needs
+	 * @return the restricted instance
+	 */
+	public Data restrictToNeeds(int[] needs) {
+		Data sub = new Data(this);
+		sub.NB_NEEDS = needs.length;
+		sub.NEEDS_SPECIES = new int[needs.length];
+		sub.NEEDS_BEGIN = new int[needs.length];
+		sub.NEEDS_END = new int[needs.length];
+		sub.NEEDS_FORBIDDEN_BEDS = new ISet[needs.length];
+		sub.NEEDS_FAMILY = new String[needs.length];
+		sub.NEEDS_RETURN_DELAY = new int[needs.length];
+		sub.NEEDS_FIXED_BED = new int[needs.length];
+		int[] newIndex = new int[NB_NEEDS];
+		Arrays.fill(newIndex, -1);
+		for (int k = 0; k < needs.length; k++) {
+			int i = needs[k];
+			newIndex[i] = k;
+			sub.NEEDS_SPECIES[k] = NEEDS_SPECIES[i];
+			sub.NEEDS_BEGIN[k] = NEEDS_BEGIN[i];
+			sub.NEEDS_END[k] = NEEDS_END[i];
+			sub.NEEDS_FORBIDDEN_BEDS[k] = NEEDS_FORBIDDEN_BEDS[i];
+			sub.NEEDS_FAMILY[k] = NEEDS_FAMILY[i];
+			sub.NEEDS_RETURN_DELAY[k] = NEEDS_RETURN_DELAY[i];
+			sub.NEEDS_FIXED_BED[k] = NEEDS_FIXED_BED[i];
+		}
+		sub.GROUPS = new ArrayList<>();
+		for (ISet group : GROUPS) {
+			ISet s = SetFactory.makeBipartiteSet(0);
+			for (int i : group) {
+				if (newIndex[i] >= 0) {
+					s.add(newIndex[i]);
+				}
+			}
+			if (s.size() > 1) {
+				sub.GROUPS.add(s);
+			}
+		}
+		sub.SYMMETRIC_GROUPS = sub.findSymmetricGroups();
+		return sub;
+	}
+
+	/**
+	 * Build an instance restricted to a subset of the beds, renumbered from 1 in the given order. Adjacency,
+	 * forbidden and fixed beds are translated, and adjacencies with removed beds are dropped.
+	 * @param beds kept beds, which must include the fixed beds of all needs
+	 * @return the restricted instance
+	 */
+	public Data restrictToBeds(int[] beds) {
+		Data sub = restrictToNeeds(IntStream.range(0, NB_NEEDS).toArray());
+		int[] newIndex = new int[NB_BEDS + 1];
+		for (int k = 0; k < beds.length; k++) {
+			newIndex[beds[k]] = k + 1;
+		}
+		sub.NB_BEDS = beds.length;
+		sub.ADJACENCY = new ISet[beds.length + 1];
+		sub.BEDS_GARDEN = new int[beds.length + 1];
+		for (int k = 0; k < beds.length; k++) {
+			sub.ADJACENCY[k + 1] = SetFactory.makeConstantSet(Arrays.stream(ADJACENCY[beds[k]].toArray())
+					.filter(b -> b >= 1 && b <= NB_BEDS && newIndex[b] > 0)
+					.map(b -> newIndex[b])
+					.toArray());
+			sub.BEDS_GARDEN[k + 1] = BEDS_GARDEN[beds[k]];
+		}
+		for (int i = 0; i < NB_NEEDS; i++) {
+			if (NEEDS_FIXED_BED[i] >= 0) {
+				if (NEEDS_FIXED_BED[i] > NB_BEDS || newIndex[NEEDS_FIXED_BED[i]] == 0) {
+					throw new IllegalArgumentException("Need " + i + " is fixed to the removed bed " + NEEDS_FIXED_BED[i]);
+				}
+				sub.NEEDS_FIXED_BED[i] = newIndex[NEEDS_FIXED_BED[i]];
+			}
+			sub.NEEDS_FORBIDDEN_BEDS[i] = SetFactory.makeConstantSet(Arrays.stream(NEEDS_FORBIDDEN_BEDS[i].toArray())
+					.filter(b -> b >= 1 && b <= NB_BEDS && newIndex[b] > 0)
+					.map(b -> newIndex[b])
+					.toArray());
+		}
+		sub.SYMMETRIC_GROUPS = sub.findSymmetricGroups();
+		return sub;
+	}
+
+	/**
+	 * Build a copy of this instance where a need is cultivated on other weeks. The need leaves its group of
+	 * identical needs.
+	 */
+	public Data withNeedWeeks(int need, int begin, int end) {
+		Data copy = restrictToNeeds(IntStream.range(0, NB_NEEDS).toArray());
+		copy.NEEDS_BEGIN[need] = begin;
+		copy.NEEDS_END[need] = end;
+		for (ISet group : copy.GROUPS) {
+			group.remove(need);
+		}
+		copy.GROUPS.removeIf(group -> group.size() < 2);
+		copy.SYMMETRIC_GROUPS = copy.findSymmetricGroups();
+		return copy;
+	}
+
+	/**
+	 * Build a copy of this instance with additional beds, numbered after the existing ones and forming a row: each
+	 * new bed is adjacent to the previous one, and the first one to the last existing bed. They belong to the garden
+	 * of the last existing bed.
+	 */
+	public Data withExtraBeds(int count) {
+		Data copy = restrictToNeeds(IntStream.range(0, NB_NEEDS).toArray());
+		copy.NB_BEDS = NB_BEDS + count;
+		copy.ADJACENCY = Arrays.copyOf(ADJACENCY, copy.NB_BEDS + 1);
+		copy.BEDS_GARDEN = Arrays.copyOf(BEDS_GARDEN, copy.NB_BEDS + 1);
+		for (int b = NB_BEDS + 1; b <= copy.NB_BEDS; b++) {
+			copy.ADJACENCY[b] = SetFactory.makeConstantSet(b < copy.NB_BEDS ? new int[]{b - 1, b + 1} : new int[]{b - 1});
+			copy.BEDS_GARDEN[b] = BEDS_GARDEN[NB_BEDS];
+		}
+		if (NB_BEDS > 0 && count > 0) {
+			ISet last = SetFactory.makeBipartiteSet(0);
+			for (int b : ADJACENCY[NB_BEDS]) {
+				last.add(b);
+			}
+			last.add(NB_BEDS + 1);
+			copy.ADJACENCY[NB_BEDS] = last;
+		}
+		return copy;
+	}
+
+	/**
+	 * Build a copy of this instance where the interaction between two species (in both directions) has another
+	 * value.
+	 */
+	public Data withInteraction(String species1, String species2, int value) {
+		Data copy = restrictToNeeds(IntStream.range(0, NB_NEEDS).toArray());
+		int a = speciesId(species1);
+		int b = speciesId(species2);
+		copy.INTERACTIONS = Arrays.stream(INTERACTIONS).map(int[]::clone).toArray(int[][]::new);
+		copy.INTERACTIONS[a][b] = value;
+		copy.INTERACTIONS[b][a] = value;
+		return copy;
+	}
+
+	/**
+	 * Build a copy of this instance where all the needs of a species are cultivated a number of weeks later (or
+	 * earlier if negative).
+	 */
+	public Data withShiftedSpecies(String species, int weeks) {
+		Data copy = restrictToNeeds(IntStream.range(0, NB_NEEDS).toArray());
+		int id = speciesId(species);
+		for (int i = 0; i < NB_NEEDS; i++) {
+			if (NEEDS_SPECIES[i] == id) {
+				copy.NEEDS_BEGIN[i] += weeks;
+				copy.NEEDS_END[i] += weeks;
+			}
+		}
+		copy.SYMMETRIC_GROUPS = copy.findSymmetricGroups();
+		return copy;
+	}
+
+	private int speciesId(String species) {
+		Integer id = SPECIES_TO_ID.get(species);
+		if (id == null) {
+			throw new IllegalArgumentException("Unknown species: " + species);
+		}
+		return id;
+	}
+
+	List<ISet> findSymmetricGroups() {
+		Map<String, ISet> groups = new LinkedHashMap<>();
+		for (int i = 0; i < NB_NEEDS; i++) {
+			if (NEEDS_FIXED_BED[i] >= 0) {
+				continue;
+			}
+			int[] forbidden = NEEDS_FORBIDDEN_BEDS[i].toArray();
+			Arrays.sort(forbidden);
+			String key = NEEDS_SPECIES[i] + ";" + NEEDS_BEGIN[i] + ";" + NEEDS_END[i] + ";" + NEEDS_FAMILY[i] + ";"
+					+ NEEDS_RETURN_DELAY[i] + ";" + Arrays.toString(forbidden);
+			groups.computeIfAbsent(key, k -> SetFactory.makeBipartiteSet(0)).add(i);
+		}
+		List<ISet> symmetricGroups = new ArrayList<>();
+		for (ISet s : groups.values()) {
+			if (s.size() > 1) {
+				symmetricGroups.add(s);
+			}
+		}
+		return symmetricGroups;
 	}
 }
@@ -0,0 +1,266 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.search.SearchState;
+import org.chocosolver.util.tools.TimeUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Portfolio distributed over several JVM processes, possibly on several hosts. Each worker process runs a
+ * {@link CustomParallelPortfolio} on the same instance, and a coordinator relays incumbents, objective bounds and
+ * stop signals between them, with a line-based protocol over TCP:
+ * <ul>
+ *     <li>worker -> coordinator: HELLO nbThreads, SOL value bed_0,...,bed_n (value is - for satisfaction),
+ *     DONE complete (complete is true if the worker explored its whole search space)</li>
+ *     <li>coordinator -> worker: WELCOME offset (index of the first search configuration to use), BOUND value,
+ *     STOP</li>
+ * </ul>
+ * Objectives are maximized. Nogoods are only shared between the threads of a same worker.
+ */
+public class DistributedPortfolio {
+
+    static final String HELLO = "HELLO";
+    static final String WELCOME = "WELCOME";
+    static final String SOL = "SOL";
+    static final String BOUND = "BOUND";
+    static final String DONE = "DONE";
+    static final String STOP = "STOP";
+
+    /**
+     * Time given to workers to report after the time limit, in milliseconds
+     */
+    private static final long GRACE_PERIOD = 10000;
+
+    private final SolverConfiguration config;
+
+    // Coordinator state
+    private final List<PrintWriter> workers = new ArrayList<>();
+    private int nextOffset = 0;
+    private int[] bestPlan;
+    private Integer bestValue;
+    private boolean proven;
+
+    public DistributedPortfolio(SolverConfiguration config) {
+        this.config = config;
+    }
+
+    /**
+     * Coordinate nbWorkers worker processes connecting to the given port, until one of them proves optimality (or
+     * finds a solution for satisfaction), or all of them are done, or the time limit is reached. The time limit
+     * starts when the coordinator starts listening: workers that have not connected by then are not waited for.
+     * @return the best solution reported by the workers
+     */
+    public SolverConfiguration.Result coordinate(int port, int nbWorkers) throws IOException {
+        List<Thread> handlers = new ArrayList<>();
+        long timeLimit = config.getTimeout() == null || config.getTimeout().startsWith("-") ? Long.MAX_VALUE
+                : System.currentTimeMillis() + TimeUtils.convertInMilliseconds(config.getTimeout());
+        try (ServerSocket server = new ServerSocket(port)) {
+            for (int k = 0; k < nbWorkers; k++) {
+                if (timeLimit != Long.MAX_VALUE) {
+                    long remaining = timeLimit - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    server.setSoTimeout((int) Math.min(Integer.MAX_VALUE, remaining));
+                }
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+                synchronized (this) {
+                    workers.add(out);
+                }
+                Thread handler = new Thread(() -> handle(socket, out));
+                handler.start();
+                handlers.add(handler);
+                if (config.isVerbose()) {
+                    System.out.println("+++WORKER CONNECTED FROM " + socket.getRemoteSocketAddress());
+                }
+            }
+        }
+        if (config.isVerbose() && handlers.size() < nbWorkers) {
+            System.out.println("+++TIME LIMIT REACHED WITH " + handlers.size() + " WORKERS CONNECTED");
+        }
+        long deadline = timeLimit == Long.MAX_VALUE ? Long.MAX_VALUE : timeLimit + GRACE_PERIOD;
+        try {
+            for (Thread handler : handlers) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                handler.join(deadline == Long.MAX_VALUE ? 0 : remaining);
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        broadcast(STOP, null);
+        if (config.isVerbose()) {
+            System.out.println("+++DISTRIBUTED SEARCH " + (proven ? "complete" : "incomplete"));
+        }
+        synchronized (this) {
+            return new SolverConfiguration.Result(null, null, bestPlan, bestPlan == null ? null : bestValue,
+                    proven || (bestPlan != null && config.getObjective().equals("SAT")));
+        }
+    }
+
+    private void handle(Socket socket, PrintWriter out) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] message = line.split(" ");
+                switch (message[0]) {
+                    case HELLO:
+                        synchronized (this) {
+                            send(out, WELCOME + " " + nextOffset);
+                            nextOffset += Integer.parseInt(message[1]);
+                            if (bestValue != null) {
+                                send(out, BOUND + " " + bestValue);
+                            }
+                        }
+                        break;
+                    case SOL:
+                        onSolution(out, message);
+                        break;
+                    case DONE:
+                        if (Boolean.parseBoolean(message[1])) {
+                            // The whole search space was explored with the shared bounds
+                            synchronized (this) {
+                                proven = true;
+                            }
+                            broadcast(STOP, out);
+                        }
+                        return;
+                    default:
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            if (config.isVerbose()) {
+                System.out.println("+++CONNECTION WITH A WORKER LOST: " + e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                workers.remove(out);
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void onSolution(PrintWriter from, String[] message) {
+        int[] plan = Arrays.stream(message[2].split(",")).mapToInt(Integer::parseInt).toArray();
+        if (message[1].equals("-")) {
+            synchronized (this) {
+                if (bestPlan == null) {
+                    bestPlan = plan;
+                }
+            }
+            broadcast(STOP, null);
+            return;
+        }
+        int value = Integer.parseInt(message[1]);
+        synchronized (this) {
+            if (bestValue != null && value <= bestValue) {
+                return;
+            }
+            bestValue = value;
+            bestPlan = plan;
+        }
+        broadcast(BOUND + " " + value, from);
+    }
+
+    private void broadcast(String message, PrintWriter except) {
+        List<PrintWriter> targets;
+        synchronized (this) {
+            targets = new ArrayList<>(workers);
+        }
+        for (PrintWriter out : targets) {
+            if (out != except) {
+                send(out, message);
+            }
+        }
+    }
+
+    private static void send(PrintWriter out, String message) {
+        synchronized (out) {
+            out.println(message);
+        }
+    }
+
+    /**
+     * Run a worker: solve the instance with a local portfolio, report its solutions to the coordinator, and apply
+     * the bounds and stop signals it sends.
+     * @return true if the worker explored its whole search space
+     */
+    public boolean work(Data data, String host, int port) throws IOException {
+        try (Socket socket = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            send(out, HELLO + " " + config.getNbCores());
+            String greeting = in.readLine();
+            if (greeting == null || !greeting.startsWith(WELCOME + " ")) {
+                // The coordinator is gone, e.g. its time limit was reached before this worker connected
+                if (config.isVerbose()) {
+                    System.out.println("+++NO WELCOME FROM THE COORDINATOR");
+                }
+                return false;
+            }
+            String[] welcome = greeting.split(" ");
+            CustomParallelPortfolio portfolio = config.buildPortfolio(data, new IntervalGraphs(data));
+            portfolio.setConfigurationOffset(Integer.parseInt(welcome[1]));
+            portfolio.setSolutionListener(p -> {
+                String value = p.getGain() == null ? "-" : String.valueOf(p.getGain().getValue());
+                String plan = Arrays.stream(p.getAssignment())
+                        .map(v -> String.valueOf(v.getValue()))
+                        .collect(Collectors.joining(","));
+                send(out, SOL + " " + value + " " + plan);
+            });
+            Thread listener = new Thread(() -> {
+                try {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        String[] message = line.split(" ");
+                        if (message[0].equals(BOUND)) {
+                            portfolio.updateBound(Integer.parseInt(message[1]));
+                        } else if (message[0].equals(STOP)) {
+                            break;
+                        }
+                    }
+                } catch (IOException ignored) {
+                }
+                // The coordinator asked to stop, or is gone
+                portfolio.stop();
+            });
+            listener.setDaemon(true);
+            listener.start();
+            boolean sat = config.getObjective().equals("SAT");
+            while (portfolio.solve()) {
+                if (sat) {
+                    break;
+                }
+            }
+            boolean complete = portfolio.getModels().stream()
+                    .anyMatch(m -> m.getSolver().getSearchState() == SearchState.TERMINATED);
+            send(out, DONE + " " + complete);
+            return complete;
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.ResolutionPolicy;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.search.SearchState;
+import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.search.strategy.selectors.values.IntDomainRandom;
+import org.chocosolver.solver.search.strategy.selectors.variables.DomOverWDegRef;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.util.tools.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Find k good plans that differ pairwise on the beds of at least a given number of crops. The plans are found one
+ * after the other, each one being the best plan at the required distance from the previous ones
+ * ({@link PropHammingDistance}). The models are built once: after each plan, the workers are reset and their
+ * diversity constraint takes the new plan into account. The workers search each plan together, with different
+ * strategies, sharing their incumbent value. Each plan is given an equal part of the time limit.
+ */
+public class DiversePlans {
+
+    private final SolverConfiguration config;
+    private final int nbPlans;
+    private final int minDistance;
+    private final int nbWorkers;
+
+    private final List<int[]> accepted = new CopyOnWriteArrayList<>();
+    private final List<Solver> solvers = new ArrayList<>();
+
+    // State of the current plan, guarded by this
+    private int[] slotPlan;
+    private Integer slotValue;
+    private boolean slotComplete;
+    private volatile boolean slotStopped;
+    private volatile long slotDeadline;
+
+    /**
+     * @param nbPlans     number of plans to find
+     * @param minDistance minimum number of crops assigned to different beds in any two plans
+     * @param nbWorkers   number of models searching each plan
+     */
+    public DiversePlans(SolverConfiguration config, int nbPlans, int minDistance, int nbWorkers) {
+        this.config = config;
+        this.nbPlans = nbPlans;
+        this.minDistance = minDistance;
+        this.nbWorkers = nbWorkers;
+    }
+
+    /**
+     * @return the plans found, at most nbPlans of them; fewer plans are returned if there are no more plans at the
+     * required distance, or if none is found in time
+     */
+    public List<SolverConfiguration.Result> solve(Data data) {
+        IntervalGraphs graphs = new IntervalGraphs(data);
+        List<AgroEcoPlanProblem> problems = new ArrayList<>();
+        for (int w = 0; w < nbWorkers; w++) {
+            AgroEcoPlanProblem pb = config.buildProblem(data, graphs);
+            IntVar[] assignment = pb.getAssignment();
+            pb.getModel().post(new Constraint("diversity", new PropHammingDistance(assignment, accepted, minDistance)));
+            Solver s = pb.getModel().getSolver();
+            if (w == 0) {
+                s.setSearch(Search.domOverWDegRefSearch(assignment));
+            } else {
+                s.setSearch(Search.intVarSearch(new DomOverWDegRef<>(assignment, w), new IntDomainRandom(w), assignment));
+            }
+            s.addStopCriterion(() -> slotStopped || System.currentTimeMillis() > slotDeadline);
+            s.plugMonitor((IMonitorSolution) () -> onSolution(pb));
+            problems.add(pb);
+            solvers.add(s);
+        }
+        long slotTime = config.getTimeout() == null || config.getTimeout().startsWith("-") ? -1
+                : TimeUtils.convertInMilliseconds(config.getTimeout()) / nbPlans;
+        List<SolverConfiguration.Result> plans = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        try {
+            for (int k = 0; k < nbPlans; k++) {
+                synchronized (this) {
+                    slotPlan = null;
+                    slotValue = null;
+                    slotComplete = false;
+                }
+                slotStopped = false;
+                slotDeadline = slotTime < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + slotTime;
+                List<Future<?>> futures = new ArrayList<>();
+                for (AgroEcoPlanProblem pb : problems) {
+                    futures.add(executor.submit(() -> search(pb)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                synchronized (this) {
+                    if (slotPlan == null) {
+                        break;
+                    }
+                    accepted.add(slotPlan);
+                    plans.add(new SolverConfiguration.Result(null, null, slotPlan, slotValue,
+                            slotComplete || slotValue == null));
+                }
+                if (config.isVerbose()) {
+                    System.out.println("+++PLAN " + (k + 1) + (slotValue == null ? "" : ": objective = " + slotValue));
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return plans;
+    }
+
+    private void search(AgroEcoPlanProblem pb) {
+        Model model = pb.getModel();
+        Solver s = model.getSolver();
+        boolean optimization = model.getResolutionPolicy() != ResolutionPolicy.SATISFACTION;
+        synchronized (this) {
+            if (optimization && slotValue != null) {
+                s.getObjectiveManager().updateBestSolution(slotValue);
+            }
+        }
+        while (s.solve()) {
+            if (!optimization) {
+                break;
+            }
+        }
+        if (s.getSearchState() == SearchState.TERMINATED) {
+            // The best plan at the required distance is proven
+            synchronized (this) {
+                slotComplete = true;
+            }
+            slotStopped = true;
+        }
+        s.reset();
+        if (optimization) {
+            s.getObjectiveManager().resetBestBounds();
+        }
+    }
+
+    private synchronized void onSolution(AgroEcoPlanProblem pb) {
+        // Plans are only accepted between searches, so the diversity constraint already holds
+        int[] plan = Arrays.stream(pb.getAssignment()).mapToInt(IntVar::getValue).toArray();
+        Model m = pb.getModel();
+        if (m.getResolutionPolicy() == ResolutionPolicy.SATISFACTION) {
+            if (slotPlan == null) {
+                slotPlan = plan;
+            }
+            slotStopped = true;
+            return;
+        }
+        int value = ((IntVar) m.getObjective()).getValue();
+        if (slotValue == null || value > slotValue) {
+            slotValue = value;
+            slotPlan = plan;
+            solvers.forEach(other -> other.getObjectiveManager().updateBestSolution(value));
+        }
+    }
+}
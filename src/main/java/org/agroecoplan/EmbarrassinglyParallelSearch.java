@@ -0,0 +1,225 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.ResolutionPolicy;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.util.objects.setDataStructures.ISet;
+import org.chocosolver.util.tools.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Embarrassingly parallel search (EPS): the search space is split into many subproblems by fixing the beds of the
+ * needs with the highest degree in the conflict graph, keeping only the partial assignments that are consistent with
+ * the initial domains and pairwise conflicts. Subproblems are dealt out to per-worker deques: each worker model
+ * solves the subproblems of its own deque, then steals from the other deques once it is empty. Workers share the
+ * best objective value, so that every subproblem is solved with the best bound known so far.
+ */
+public class EmbarrassinglyParallelSearch {
+
+    /**
+     * Number of subproblems generated per worker, large enough to balance the load between workers.
+     */
+    private static final int SUBPROBLEMS_PER_WORKER = 30;
+
+    private final SolverConfiguration config;
+    private final int nbWorkers;
+
+    private int[] decisionNeeds;
+    private ConcurrentLinkedDeque<int[]>[] queues;
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+    private final List<Solver> solvers = new ArrayList<>();
+    private boolean complete;
+    private int[] bestPlan;
+    private Integer bestValue;
+
+    public EmbarrassinglyParallelSearch(SolverConfiguration config, int nbWorkers) {
+        this.config = config;
+        this.nbWorkers = Math.max(1, nbWorkers);
+    }
+
+    @SuppressWarnings("unchecked")
+    public SolverConfiguration.Result solve(Data data) {
+        if (data.NB_NEEDS == 0) {
+            return config.solve(data);
+        }
+        IntervalGraphs graphs = new IntervalGraphs(data);
+        List<int[]> subproblems = decompose(config.buildProblem(data, graphs), graphs);
+        if (config.isVerbose()) {
+            System.out.println("+++EPS: " + subproblems.size() + " subproblems on the beds of "
+                    + decisionNeeds.length + " needs");
+        }
+        queues = new ConcurrentLinkedDeque[nbWorkers];
+        for (int w = 0; w < nbWorkers; w++) {
+            queues[w] = new ConcurrentLinkedDeque<>();
+        }
+        for (int k = 0; k < subproblems.size(); k++) {
+            queues[k % nbWorkers].addLast(subproblems.get(k));
+        }
+        long deadline = config.getTimeout() == null || config.getTimeout().startsWith("-") ? Long.MAX_VALUE
+                : System.currentTimeMillis() + TimeUtils.convertInMilliseconds(config.getTimeout());
+        complete = true;
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < nbWorkers; w++) {
+                int finalW = w;
+                futures.add(executor.submit(() -> work(finalW, data, graphs, deadline)));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+        if (config.isVerbose()) {
+            System.out.println("+++EPS: search " + (complete ? "complete" : "incomplete"));
+        }
+        return new SolverConfiguration.Result(null, null, bestPlan, bestPlan == null ? null : bestValue,
+                complete || (bestPlan != null && config.getObjective().equals("SAT")));
+    }
+
+    /**
+     * Enumerate the assignments of the needs of highest degree, one need at a time, until there are enough of
+     * them to feed the workers.
+     */
+    private List<int[]> decompose(AgroEcoPlanProblem problem, IntervalGraphs graphs) {
+        IntVar[] assignment = problem.getAssignment();
+        boolean withRotations = config.hasConstraint("C1");
+        int[][] conflicts = withRotations ? graphs.intervalGraphWithRotations : graphs.intervalGraph;
+        ISet[] conflictSets = withRotations ? graphs.intervalGraphSetsWithRotations : graphs.intervalGraphSets;
+        decisionNeeds = IntStream.range(0, assignment.length)
+                .filter(i -> !assignment[i].isInstantiated())
+                .boxed()
+                .sorted(Comparator.comparingInt(i -> -conflicts[i].length))
+                .mapToInt(i -> i)
+                .toArray();
+        int target = nbWorkers * SUBPROBLEMS_PER_WORKER;
+        List<int[]> subproblems = new ArrayList<>();
+        subproblems.add(new int[0]);
+        int depth = 0;
+        while (depth < decisionNeeds.length && subproblems.size() < target) {
+            int need = decisionNeeds[depth];
+            List<int[]> next = new ArrayList<>();
+            for (int[] partial : subproblems) {
+                for (int bed = assignment[need].getLB(); bed <= assignment[need].getUB(); bed = assignment[need].nextValue(bed)) {
+                    if (isConsistent(partial, need, bed, conflictSets)) {
+                        int[] extended = Arrays.copyOf(partial, depth + 1);
+                        extended[depth] = bed;
+                        next.add(extended);
+                    }
+                }
+            }
+            subproblems = next;
+            depth++;
+        }
+        decisionNeeds = Arrays.copyOf(decisionNeeds, depth);
+        return subproblems;
+    }
+
+    /**
+     * @return true if need can be assigned to bed, given the beds of the first decision needs in partial
+     */
+    private boolean isConsistent(int[] partial, int need, int bed, ISet[] conflicts) {
+        for (int k = 0; k < partial.length; k++) {
+            if (partial[k] == bed && (conflicts[need].contains(decisionNeeds[k]) || conflicts[decisionNeeds[k]].contains(need))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void work(int w, Data data, IntervalGraphs graphs, long deadline) {
+        AgroEcoPlanProblem pb = config.buildProblem(data, graphs);
+        Model model = pb.getModel();
+        Solver s = model.getSolver();
+        s.setSearch(Search.domOverWDegRefSearch(pb.getAssignment()));
+        s.addStopCriterion(() -> stopped.get() || System.currentTimeMillis() > deadline);
+        s.plugMonitor((IMonitorSolution) () -> onSolution(pb));
+        synchronized (solvers) {
+            solvers.add(s);
+        }
+        boolean optimization = model.getResolutionPolicy() != ResolutionPolicy.SATISFACTION;
+        int[] sub;
+        while ((sub = nextSubproblem(w)) != null) {
+            Constraint[] fix = new Constraint[sub.length];
+            for (int k = 0; k < sub.length; k++) {
+                fix[k] = model.arithm(pb.getAssignment()[decisionNeeds[k]], "=", sub[k]);
+            }
+            model.post(fix);
+            synchronized (this) {
+                if (optimization && bestValue != null) {
+                    s.getObjectiveManager().updateBestSolution(bestValue);
+                }
+            }
+            while (s.solve()) {
+                if (!optimization) {
+                    stopped.set(true);
+                    break;
+                }
+            }
+            if (s.isStopCriterionMet() && !stopped.get()) {
+                synchronized (this) {
+                    complete = false;
+                }
+            }
+            model.unpost(fix);
+            s.reset();
+            if (System.currentTimeMillis() > deadline) {
+                synchronized (this) {
+                    complete = false;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return a subproblem from the deque of worker w, or one stolen from the back of another deque
+     */
+    private int[] nextSubproblem(int w) {
+        if (stopped.get()) {
+            return null;
+        }
+        int[] sub = queues[w].pollFirst();
+        for (int k = 1; sub == null && k < nbWorkers; k++) {
+            sub = queues[(w + k) % nbWorkers].pollLast();
+        }
+        return sub;
+    }
+
+    private synchronized void onSolution(AgroEcoPlanProblem pb) {
+        Model m = pb.getModel();
+        if (m.getResolutionPolicy() == ResolutionPolicy.SATISFACTION) {
+            if (bestPlan == null) {
+                bestPlan = Arrays.stream(pb.getAssignment()).mapToInt(IntVar::getValue).toArray();
+            }
+            return;
+        }
+        int value = ((IntVar) m.getObjective()).getValue();
+        boolean maximize = m.getResolutionPolicy() == ResolutionPolicy.MAXIMIZE;
+        if (bestValue == null || (maximize ? value > bestValue : value < bestValue)) {
+            bestValue = value;
+            bestPlan = Arrays.stream(pb.getAssignment()).mapToInt(IntVar::getValue).toArray();
+            synchronized (solvers) {
+                solvers.forEach(other -> other.getObjectiveManager().updateBestSolution(value));
+            }
+        }
+    }
+}
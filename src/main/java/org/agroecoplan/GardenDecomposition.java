@@ -0,0 +1,354 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solution;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.variables.BoolVar;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.util.objects.setDataStructures.ISet;
+import org.chocosolver.util.objects.setDataStructures.SetFactory;
+import org.chocosolver.util.tools.TimeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Decomposition of an instance by gardens (column "jardins" of the beds file), for farms whose bed adjacency rarely
+ * crosses gardens:
+ * 1. A master model assigns needs to gardens, such that in each clique of overlapping needs (i.e. at each week), no
+ *    garden receives more needs than it has beds. Identical crops that must be grouped (C5) go to the same garden,
+ *    and the maximum load of a garden is minimized to keep subproblems loose.
+ * 2. The subproblem of each garden (an instance restricted to its beds and needs) is solved in parallel. When a
+ *    subproblem is infeasible, the master forbids this assignment and step 1 is repeated.
+ * 3. Cross-garden constraints (C2 and C3 between adjacent beds of different gardens) are repaired by solving again
+ *    the gardens in conflict, with the beds in conflict with the other gardens forbidden. When a repair fails, the
+ *    master forbids the assignment of the gardens that could not be repaired and step 1 is repeated.
+ * 4. The assembled plan is checked on the whole instance. If it is invalid or misses a lower bound on an objective,
+ *    the master forbids the assignment of all the gardens and step 1 is repeated.
+ * Beds are renumbered within a garden, so C2 (which relies on bed numbering) is only exact within gardens made of
+ * consecutive beds, and over-constrained otherwise. For the same reason, groups of identical crops (C5) are not
+ * placed on beds consecutive in their garden but not in the whole farm. Gardens are solved without lower bounds on
+ * the objectives, and the objective of the assembled plan is computed on the whole instance: interactions (O1)
+ * between adjacent beds of different gardens are counted, but not optimized.
+ * The time limit of the configuration is shared by all the resolutions (master and gardens, at every iteration).
+ */
+public class GardenDecomposition {
+
+    private static final long MASTER_TIME_LIMIT_MS = 10_000;
+    private static final int MAX_MASTER_ITERATIONS = 10;
+
+    private final SolverConfiguration config;
+    private final SolverConfiguration gardenConfig;
+    private final int nbWorkers;
+
+    private Data data;
+    private IntervalGraphs graphs;
+    private long deadline;
+    private int[][] gardenBeds;
+    /**
+     * Assignments of needs to gardens whose subproblem is infeasible or could not be repaired
+     */
+    private List<Integer> cutGardens;
+    private List<int[]> cutNeeds;
+
+    /**
+     * @param config    settings used to solve each garden, and lower bounds on the objectives of the plan
+     * @param nbWorkers maximum number of gardens solved simultaneously
+     */
+    public GardenDecomposition(SolverConfiguration config, int nbWorkers) {
+        this.config = config;
+        this.gardenConfig = config.withoutObjectiveBounds();
+        this.nbWorkers = Math.max(1, nbWorkers);
+    }
+
+    public SolverConfiguration.Result solve(Data data) {
+        this.data = data;
+        this.graphs = new IntervalGraphs(data);
+        this.cutGardens = new ArrayList<>();
+        this.cutNeeds = new ArrayList<>();
+        String timeout = config.getTimeout();
+        this.deadline = timeout == null || timeout.startsWith("-") ? Long.MAX_VALUE
+                : System.currentTimeMillis() + TimeUtils.convertInMilliseconds(timeout);
+        int nbGardens = data.GARDENS.length;
+        gardenBeds = new int[nbGardens][];
+        for (int g = 0; g < nbGardens; g++) {
+            int finalG = g;
+            gardenBeds[g] = IntStream.rangeClosed(1, data.NB_BEDS).filter(b -> data.BEDS_GARDEN[b] == finalG).toArray();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        try {
+            for (int iteration = 0; iteration < MAX_MASTER_ITERATIONS && !timeIsUp(); iteration++) {
+                // 1. Master
+                int[] gardenOf = solveMaster();
+                if (gardenOf == null) {
+                    if (config.isVerbose()) {
+                        System.out.println("+++NO ASSIGNMENT OF NEEDS TO GARDENS");
+                    }
+                    return new SolverConfiguration.Result(null, null, null, null);
+                }
+                int[][] gardenNeeds = new int[nbGardens][];
+                for (int g = 0; g < nbGardens; g++) {
+                    int finalG = g;
+                    gardenNeeds[g] = IntStream.range(0, data.NB_NEEDS).filter(i -> gardenOf[i] == finalG).toArray();
+                }
+                // 2. Subproblems
+                BitSet all = new BitSet(nbGardens);
+                all.set(0, nbGardens);
+                int[] plan = new int[data.NB_NEEDS];
+                ISet[] repairForbidden = new ISet[data.NB_NEEDS];
+                for (int i = 0; i < data.NB_NEEDS; i++) {
+                    repairForbidden[i] = SetFactory.makeBipartiteSet(0);
+                }
+                BitSet failed = solveGardens(all, gardenNeeds, repairForbidden, plan, executor);
+                if (!failed.isEmpty()) {
+                    cut(failed, gardenNeeds);
+                    if (config.isVerbose()) {
+                        System.out.println("+++GARDENS " + failed + " INFEASIBLE, NEW MASTER ITERATION");
+                    }
+                    continue;
+                }
+                // 3. Repair
+                BitSet toRepair = findCrossGardenConflicts(plan, gardenOf, repairForbidden);
+                for (int round = 0; round < nbGardens && !toRepair.isEmpty() && failed.isEmpty() && !timeIsUp();
+                     round++) {
+                    if (config.isVerbose()) {
+                        System.out.println("+++REPAIR OF GARDENS " + toRepair);
+                    }
+                    failed = solveGardens(toRepair, gardenNeeds, repairForbidden, plan, executor);
+                    if (failed.isEmpty()) {
+                        toRepair = findCrossGardenConflicts(plan, gardenOf, repairForbidden);
+                    }
+                }
+                if (failed.isEmpty() && toRepair.isEmpty()) {
+                    SolverConfiguration.Result result = config.evaluate(data, plan);
+                    if (result.getPlan() != null) {
+                        return result;
+                    }
+                    cut(all, gardenNeeds);
+                    if (config.isVerbose()) {
+                        System.out.println("+++PLAN REJECTED, NEW MASTER ITERATION");
+                    }
+                    continue;
+                }
+                // The gardens that could not be repaired
+                cut(failed.isEmpty() ? toRepair : failed, gardenNeeds);
+                if (config.isVerbose()) {
+                    System.out.println("+++CROSS-GARDEN CONFLICTS COULD NOT BE REPAIRED, NEW MASTER ITERATION");
+                }
+            }
+            if (config.isVerbose()) {
+                System.out.println(timeIsUp() ? "+++TIME LIMIT REACHED"
+                        : "+++NO PLAN AFTER " + MAX_MASTER_ITERATIONS + " MASTER ITERATIONS");
+            }
+            return new SolverConfiguration.Result(null, null, null, null);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private boolean timeIsUp() {
+        return System.currentTimeMillis() >= deadline;
+    }
+
+    /**
+     * @return the time left before the deadline, at most maxMs, as a time limit of at least one second
+     */
+    private String timeLimit(long maxMs) {
+        long left = Math.min(maxMs, deadline - System.currentTimeMillis());
+        return Math.max(1, left / 1000) + "s";
+    }
+
+    /**
+     * Forbid the master to assign again the same needs to some gardens.
+     */
+    private void cut(BitSet gardens, int[][] gardenNeeds) {
+        gardens.stream().forEach(g -> {
+            cutGardens.add(g);
+            cutNeeds.add(gardenNeeds[g]);
+        });
+    }
+
+    /**
+     * @return the garden of each need, or null if there is no assignment satisfying capacities and cuts
+     */
+    private int[] solveMaster() {
+        Model master = new Model("Gardens");
+        int nbGardens = data.GARDENS.length;
+        boolean withForbiddenBeds = config.hasConstraint("C4");
+        IntVar[] garden = new IntVar[data.NB_NEEDS];
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            int[] allowed;
+            if (data.NEEDS_FIXED_BED[i] >= 0) {
+                allowed = new int[]{data.BEDS_GARDEN[data.NEEDS_FIXED_BED[i]]};
+            } else {
+                int finalI = i;
+                allowed = IntStream.range(0, nbGardens)
+                        .filter(g -> Arrays.stream(gardenBeds[g])
+                                .anyMatch(b -> !withForbiddenBeds || !data.NEEDS_FORBIDDEN_BEDS[finalI].contains(b)))
+                        .toArray();
+                if (allowed.length == 0) {
+                    return null;
+                }
+            }
+            garden[i] = master.intVar("garden_" + i, allowed);
+        }
+        if (config.hasConstraint("C5")) {
+            for (ISet group : data.GROUPS) {
+                int[] members = group.toArray();
+                for (int k = 1; k < members.length; k++) {
+                    master.arithm(garden[members[0]], "=", garden[members[k]]).post();
+                }
+            }
+        }
+        List<IntVar> loads = new ArrayList<>();
+        for (ISet clique : ChordalGraphUtils.findMaximalCliques(graphs.intervalGraph)) {
+            IntVar[] vars = Arrays.stream(clique.toArray()).mapToObj(i -> garden[i]).toArray(IntVar[]::new);
+            for (int g = 0; g < nbGardens; g++) {
+                IntVar load = master.intVar(0, gardenBeds[g].length);
+                master.count(g, vars, load).post();
+                loads.add(load);
+            }
+        }
+        for (int c = 0; c < cutGardens.size(); c++) {
+            int g = cutGardens.get(c);
+            BoolVar[] inGarden = Arrays.stream(cutNeeds.get(c))
+                    .mapToObj(i -> master.arithm(garden[i], "=", g).reify())
+                    .toArray(BoolVar[]::new);
+            master.sum(inGarden, "<", inGarden.length).post();
+        }
+        IntVar maxLoad = master.intVar(0, data.NB_BEDS);
+        if (!loads.isEmpty()) {
+            master.max(maxLoad, loads.toArray(new IntVar[0])).post();
+        }
+        Solver solver = master.getSolver();
+        solver.limitTime(timeLimit(MASTER_TIME_LIMIT_MS));
+        Solution sol = solver.findOptimalSolution(maxLoad, false);
+        if (sol == null) {
+            return null;
+        }
+        return Arrays.stream(garden).mapToInt(sol::getIntVal).toArray();
+    }
+
+    /**
+     * Solve the subproblems of some gardens in parallel and report their plan in the global plan.
+     * @return the gardens whose subproblem has no solution
+     */
+    private BitSet solveGardens(BitSet gardens, int[][] gardenNeeds, ISet[] repairForbidden, int[] plan,
+                                ExecutorService executor) {
+        List<Future<SolverConfiguration.Result>> futures = new ArrayList<>();
+        int[] solved = gardens.stream().toArray();
+        for (int g : solved) {
+            futures.add(executor.submit(() -> solveGarden(g, gardenNeeds[g], repairForbidden)));
+        }
+        BitSet failed = new BitSet();
+        for (int k = 0; k < solved.length; k++) {
+            int g = solved[k];
+            SolverConfiguration.Result result;
+            try {
+                result = futures.get(k).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+            if (result.getPlan() == null) {
+                failed.set(g);
+            } else {
+                for (int n = 0; n < gardenNeeds[g].length; n++) {
+                    plan[gardenNeeds[g][n]] = gardenBeds[g][result.getPlan()[n] - 1];
+                }
+            }
+        }
+        return failed;
+    }
+
+    private SolverConfiguration.Result solveGarden(int g, int[] needs, ISet[] repairForbidden) {
+        int[] beds = gardenBeds[g];
+        Data gardenData = data.restrictToNeeds(needs).restrictToBeds(beds);
+        SolverConfiguration gardenConfig = this.gardenConfig;
+        if (deadline != Long.MAX_VALUE) {
+            gardenConfig = gardenConfig.withTimeout(timeLimit(Long.MAX_VALUE));
+        }
+        // Beds forbidden for this resolution only, numbered within the garden
+        ISet[] forbidden = new ISet[needs.length];
+        int[] newIndex = new int[data.NB_BEDS + 1];
+        for (int k = 0; k < beds.length; k++) {
+            newIndex[beds[k]] = k + 1;
+        }
+        for (int n = 0; n < needs.length; n++) {
+            // Beds in conflict with other gardens
+            forbidden[n] = SetFactory.makeBipartiteSet(0);
+            for (int b : repairForbidden[needs[n]]) {
+                forbidden[n].add(newIndex[b]);
+            }
+        }
+        if (config.hasConstraint("C5")) {
+            // A group starts from its first crop (see AgroEcoPlanProblem#postGroupIdenticalCropsConstraint), on beds
+            // that must also be consecutive in the whole farm
+            for (ISet group : gardenData.GROUPS) {
+                int first = group.toArray()[0];
+                for (int k = 0; k + group.size() <= beds.length; k++) {
+                    if (beds[k + group.size() - 1] - beds[k] != group.size() - 1) {
+                        forbidden[first].add(k + 1);
+                    }
+                }
+            }
+        }
+        if (Arrays.stream(forbidden).anyMatch(f -> !f.isEmpty())) {
+            boolean withForbiddenBeds = config.hasConstraint("C4");
+            for (int n = 0; n < needs.length; n++) {
+                if (withForbiddenBeds) {
+                    for (int b : gardenData.NEEDS_FORBIDDEN_BEDS[n]) {
+                        forbidden[n].add(b);
+                    }
+                }
+                gardenData.NEEDS_FORBIDDEN_BEDS[n] = SetFactory.makeConstantSet(forbidden[n].toArray());
+            }
+            if (!withForbiddenBeds) {
+                String[] constraints = Arrays.copyOf(config.getConstraints(), config.getConstraints().length + 1);
+                constraints[constraints.length - 1] = "C4";
+                gardenConfig = gardenConfig.withConstraints(constraints);
+            }
+        }
+        return gardenConfig.solve(gardenData);
+    }
+
+    /**
+     * Find the pairs of overlapping needs of different gardens violating C2 or C3. For each of them, the need of
+     * the garden with the highest index is forbidden the beds of its garden in conflict with the other need.
+     * @return the gardens to solve again
+     */
+    private BitSet findCrossGardenConflicts(int[] plan, int[] gardenOf, ISet[] repairForbidden) {
+        boolean c2 = config.hasConstraint("C2");
+        boolean c3 = config.hasConstraint("C3");
+        BitSet toRepair = new BitSet();
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            for (int j : graphs.intervalGraph[i]) {
+                if (gardenOf[i] >= gardenOf[j] || !inConflict(i, j, plan[i], plan[j], c2, c3)) {
+                    continue;
+                }
+                toRepair.set(gardenOf[j]);
+                for (int b : gardenBeds[gardenOf[j]]) {
+                    if (inConflict(i, j, plan[i], b, c2, c3)) {
+                        repairForbidden[j].add(b);
+                    }
+                }
+            }
+        }
+        return toRepair;
+    }
+
+    private boolean inConflict(int i, int j, int a, int b, boolean c2, boolean c3) {
+        int si = data.NEEDS_SPECIES[i];
+        int sj = data.NEEDS_SPECIES[j];
+        if (c2 && (data.INTERACTIONS[si][sj] < 0 || data.INTERACTIONS[sj][si] < 0) && Math.abs(a - b) <= 1) {
+            return true;
+        }
+        return c3 && si == sj && (data.ADJACENCY[a].contains(b) || data.ADJACENCY[b].contains(a));
+    }
+}
@@ -0,0 +1,108 @@
+package org.agroecoplan;
+
+import com.opencsv.exceptions.CsvException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of parsed instances and of their interval graphs, keyed by a hash of the content of
+ * the input files, so that repeated requests on the same farm skip parsing and graph building.
+ */
+public class InstanceCache {
+
+    /**
+     * A parsed instance with its interval graphs.
+     */
+    public static class Instance {
+
+        public final Data data;
+        public final IntervalGraphs graphs;
+
+        Instance(Data data, IntervalGraphs graphs) {
+            this.data = data;
+            this.graphs = graphs;
+        }
+    }
+
+    private final Map<String, Instance> instances;
+    private long hits = 0;
+    private long misses = 0;
+
+    public InstanceCache(int capacity) {
+        this.instances = new LinkedHashMap<String, Instance>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Instance> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the instance described by the given files (precedences and delays may be null), parsed only if
+     * files with the same content were not parsed recently
+     */
+    public Instance get(String needs, String interactions, String beds, String precedences, String delays)
+            throws IOException, CsvException {
+        String key = hashFiles(needs, interactions, beds, precedences, delays);
+        synchronized (this) {
+            Instance instance = instances.get(key);
+            if (instance != null) {
+                hits++;
+                return instance;
+            }
+            misses++;
+        }
+        Data data = new Data(needs, interactions, beds, precedences, delays);
+        Instance instance = new Instance(data, new IntervalGraphs(data));
+        synchronized (this) {
+            instances.put(key, instance);
+        }
+        return instance;
+    }
+
+    public synchronized int size() {
+        return instances.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return SHA-256 of the contents of the files (a missing file is hashed as an empty marker)
+     */
+    static String hashFiles(String... paths) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        for (String path : paths) {
+            if (path == null) {
+                digest.update("<none>".getBytes(StandardCharsets.UTF_8));
+            } else {
+                byte[] content = Files.readAllBytes(Paths.get(path));
+                digest.update(Integer.toString(content.length).getBytes(StandardCharsets.UTF_8));
+                digest.update(content);
+            }
+            digest.update((byte) 0);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,162 @@
+package org.agroecoplan;
+
+import org.chocosolver.util.objects.setDataStructures.ISet;
+import org.chocosolver.util.objects.setDataStructures.SetFactory;
+
+import java.util.stream.IntStream;
+
+import static org.agroecoplan.AgroEcoPlanProblem.NB_WEEKS_IN_YEAR;
+
+/**
+ * Interval graphs of the needs of an instance: the overlap graph of cultivation periods, and the same graph
+ * extended with the rotation constraints (return delays). They only depend on the data, so they can be computed
+ * before (and shared between) Choco models.
+ */
+public class IntervalGraphs {
+
+    final ISet[] intervalGraphSets;
+    final int[][] intervalGraph;
+    final ISet[] intervalGraphSetsWithRotations;
+    final int[][] intervalGraphWithRotations;
+
+    public IntervalGraphs(Data data) {
+        try (Phases.Phase phase = Phases.start("graphs")) {
+            intervalGraphSets = new ISet[data.NB_NEEDS];
+            intervalGraphSetsWithRotations = new ISet[data.NB_NEEDS];
+            intervalGraph = new int[data.NB_NEEDS][];
+            intervalGraphWithRotations = new int[data.NB_NEEDS][];
+            for (int i = 0; i < data.NB_NEEDS; i++) {
+                intervalGraphSets[i] = SetFactory.makeBipartiteSet(0);
+                intervalGraphSetsWithRotations[i] = SetFactory.makeBipartiteSet(0);
+                for (int j = 0; j < data.NB_NEEDS; j++) {
+                    if (i != j) {
+                        // If the intervals are intersecting, there is no need to consider the rotation and cie constraints
+                        if (overlap(data, i, j)) {
+                            intervalGraphSets[i].add(j);
+                            intervalGraphSetsWithRotations[i].add(j);
+                        } else if (rotationConflict(data, i, j)) {
+                            intervalGraphSetsWithRotations[i].add(j);
+                        }
+                    }
+                }
+                intervalGraph[i] = intervalGraphSets[i].toArray();
+                intervalGraphWithRotations[i] = intervalGraphSetsWithRotations[i].toArray();
+            }
+            phase.setSize(data.NB_NEEDS);
+        }
+    }
+
+    private IntervalGraphs(IntervalGraphs graphs) {
+        intervalGraphSets = graphs.intervalGraphSets.clone();
+        intervalGraph = graphs.intervalGraph.clone();
+        intervalGraphSetsWithRotations = graphs.intervalGraphSetsWithRotations.clone();
+        intervalGraphWithRotations = graphs.intervalGraphWithRotations.clone();
+    }
+
+    /**
+     * @return the graphs of the given data, which only differs from the data of these graphs by the weeks of a
+     * need: only the row of this need and the rows of its old and new neighbours are computed again, the other rows
+     * are shared with these graphs.
+     */
+    public IntervalGraphs withNeedWeeks(Data data, int need) {
+        IntervalGraphs graphs = new IntervalGraphs(this);
+        ISet overlaps = SetFactory.makeBipartiteSet(0);
+        ISet conflicts = SetFactory.makeBipartiteSet(0);
+        for (int j = 0; j < data.NB_NEEDS; j++) {
+            if (j == need) {
+                continue;
+            }
+            if (overlap(data, need, j)) {
+                overlaps.add(j);
+                conflicts.add(j);
+            } else if (rotationConflict(data, need, j)) {
+                conflicts.add(j);
+            }
+            boolean overlap = overlap(data, j, need);
+            boolean conflict = overlap || rotationConflict(data, j, need);
+            if (overlap != intervalGraphSets[j].contains(need)) {
+                setEdge(graphs.intervalGraphSets, graphs.intervalGraph, j, need, overlap);
+            }
+            if (conflict != intervalGraphSetsWithRotations[j].contains(need)) {
+                setEdge(graphs.intervalGraphSetsWithRotations, graphs.intervalGraphWithRotations, j, need, conflict);
+            }
+        }
+        graphs.intervalGraphSets[need] = overlaps;
+        graphs.intervalGraph[need] = overlaps.toArray();
+        graphs.intervalGraphSetsWithRotations[need] = conflicts;
+        graphs.intervalGraphWithRotations[need] = conflicts.toArray();
+        return graphs;
+    }
+
+    /**
+     * Replace row i of a graph by a new row with or without the edge (i, j), keeping the neighbours sorted.
+     */
+    private static void setEdge(ISet[] sets, int[][] rows, int i, int j, boolean edge) {
+        int[] row = IntStream.concat(IntStream.of(rows[i]).filter(k -> k != j),
+                edge ? IntStream.of(j) : IntStream.empty()).sorted().toArray();
+        ISet set = SetFactory.makeBipartiteSet(0);
+        for (int k : row) {
+            set.add(k);
+        }
+        sets[i] = set;
+        rows[i] = row;
+    }
+
+    /**
+     * @return true iff the cultivation periods of needs i and j intersect.
+     */
+    public static boolean overlap(Data data, int i, int j) {
+        return IntervalUtils.intersect(data.NEEDS_BEGIN[i], data.NEEDS_END[i], data.NEEDS_BEGIN[j], data.NEEDS_END[j]);
+    }
+
+    /**
+     * @return true iff needs i and j, whose cultivation periods do not intersect, cannot be cultivated on the same
+     * bed because of a return delay.
+     */
+    public static boolean rotationConflict(Data data, int i, int j) {
+        // Effective cultivation period
+        int si = data.NEEDS_BEGIN[i];
+        int sj = data.NEEDS_BEGIN[j];
+        int ei = data.NEEDS_END[i];
+        int ej = data.NEEDS_END[j];
+        // TODO LEGACY WITH RETURN DELAY IN NEEDS FILE
+        if (data.DELAYS == null) {
+            if (data.NEEDS_FAMILY[i].equals(data.NEEDS_FAMILY[j])) {
+                ei += data.NEEDS_RETURN_DELAY[i] * NB_WEEKS_IN_YEAR - (ei - si);
+                ej += data.NEEDS_RETURN_DELAY[j] * NB_WEEKS_IN_YEAR - (ej - si);
+                return IntervalUtils.intersect(si, ei, sj, ej);
+            }
+        } else {
+            // 1 - Need for compost constraint:
+            //      if both b_i and b_j need compost, we extend their cultivation end to 1 year
+            //      (52 weeks).
+            // TODO
+            // 2 - Turnover constraint:
+            //      when b_i and b_j need a return delay, we use is to extend their
+            //      cultivation end, thus ensure the satisfaction of the return delay in the interval graph
+            //      directly.
+            if (data.DELAYS[data.NEEDS_SPECIES[i]][data.NEEDS_SPECIES[j]] > 0) {
+                ei += data.NEEDS_RETURN_DELAY[i] * NB_WEEKS_IN_YEAR - (ei - si);
+                ej += data.NEEDS_RETURN_DELAY[j] * NB_WEEKS_IN_YEAR - (ej - si);
+                return IntervalUtils.intersect(si, ei, sj, ej);
+            }
+        }
+        return false;
+    }
+
+    public ISet[] getIntervalGraphSets() {
+        return intervalGraphSets;
+    }
+
+    public int[][] getIntervalGraph() {
+        return intervalGraph;
+    }
+
+    public ISet[] getIntervalGraphSetsWithRotations() {
+        return intervalGraphSetsWithRotations;
+    }
+
+    public int[][] getIntervalGraphWithRotations() {
+        return intervalGraphWithRotations;
+    }
+}
@@ -3,56 +3,59 @@ package org.agroecoplan;
 import com.opencsv.CSVWriter;
 import com.opencsv.CSVWriterBuilder;
 import com.opencsv.exceptions.CsvException;
-import org.chocosolver.solver.Model;
-import org.chocosolver.solver.Solution;
-import org.chocosolver.solver.Solver;
-import org.chocosolver.solver.search.strategy.Search;
-import org.chocosolver.solver.variables.IntVar;
 import org.chocosolver.util.objects.setDataStructures.ISet;
 import org.chocosolver.util.objects.setDataStructures.SetFactory;
-import org.chocosolver.util.tools.ArrayUtils;
 import picocli.CommandLine;
 
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.stream.IntStream;
+import java.util.List;
 
 @CommandLine.Command(
-        description = "Agroecological crop allocation problem solver"
+        description = "Agroecological crop allocation problem solver",
+        subcommands = {BatchSolver.class, PlanValidationCommand.class, SolverServer.class}
 )
 public class Main implements Runnable {
 
     @CommandLine.Parameters(
+            arity = "0..1",
             description = "Path of the CSV file describing the crop calendar"
     )
     String needsFile;
 
     @CommandLine.Parameters(
+            arity = "0..1",
             description = "Path of the CSV file describing the farm (vegetable beds and their adjacency relation)"
     )
     String bedsFile;
 
     @CommandLine.Parameters(
+            arity = "0..1",
             description = "Path of the CSV file describing interactions between species"
     )
     String interactionsFile;
 
     @CommandLine.Parameters(
+            arity = "0..1",
             description = "Path of the CSV file describing precedences interactions between species"
     )
     String precedenceFile;
 
     @CommandLine.Parameters(
+            arity = "0..1",
             description = "Path of the CSV file describing delay interactions between species"
     )
     String delaysFile;
 
     @CommandLine.Parameters(
+            arity = "0..1",
             description = "Output file path"
     )
     String output;
 
+    @CommandLine.Spec
+    CommandLine.Model.CommandSpec spec;
+
     @CommandLine.Option(
             names = {"-p", "--parallel"},
             description = "If used, parallelize the search using a parallel portfolio",
@@ -81,6 +84,9 @@ public class Main implements Runnable {
                     "-SAT: Constraint satisfaction only, no optimization objective\n" +
                     "-O1: Maximize the number of positive interactions\n" +
                     "-O2: Maximize the number of positive precedences\n" +
+                    "-O1,O2 (or O2,O1): Maximize O1, then O2 without losing O1 (or the converse)\n" +
+                    "-PARETO: Compute the Pareto front of O1 and O2 (the output file receives the front, and the plan " +
+                    "of each point is exported next to it)\n" +
                     "Default is SAT",
             defaultValue = "SAT"
     )
@@ -129,37 +135,156 @@ public class Main implements Runnable {
     )
     boolean show;
 
-    private static void enforceConstraints(AgroEcoPlanProblem problem, String[] constraints) {
-        for (String c : constraints) {
-            switch (c) {
-                case "C1":
-                    problem.postRotationConstraints();
-                    break;
-                case "C2":
-                    problem.postForbidNegativeInteractionsConstraint();
-                    break;
-                case "C3":
-                    problem.postDiluteSpeciesConstraint();
-                    break;
-                case "C5":
-                    problem.postGroupIdenticalCropsConstraint();
-                case "C6":
-                    problem.postForbidNegativePrecedencesConstraint();
-                default:
-                    break;
-            }
-        }
-    }
+    @CommandLine.Option(
+            names = {"-pre", "--presolve"},
+            description = "If true, presolve the instance before building the model: detect trivial infeasibilities, " +
+                    "drop the needs that overlap and interact with nothing, and fix the needs with a single " +
+                    "possible bed",
+            defaultValue = "false"
+    )
+    boolean presolve;
+
+    @CommandLine.Option(
+            names = {"-rw", "--rolling-window"},
+            description = "If positive, solve the calendar with a rolling horizon, using time windows of this number " +
+                    "of weeks (e.g. 104 for two years)",
+            defaultValue = "0"
+    )
+    int rollingWindow;
+
+    @CommandLine.Option(
+            names = {"-ro", "--rolling-overlap"},
+            description = "If rolling horizon is used, number of weeks shared by two consecutive windows",
+            defaultValue = "26"
+    )
+    int rollingOverlap;
+
+    @CommandLine.Option(
+            names = {"-g", "--gardens"},
+            description = "If true, decompose the problem by gardens (column \"jardins\" of the beds file): assign " +
+                    "needs to gardens, solve gardens in parallel, then repair cross-garden constraints",
+            defaultValue = "false"
+    )
+    boolean gardens;
+
+    @CommandLine.Option(
+            names = {"-eps", "--embarrassingly-parallel"},
+            description = "If true, split the search space into subproblems solved by a pool of workers (as many " +
+                    "as the number of cores), instead of using a parallel portfolio",
+            defaultValue = "false"
+    )
+    boolean eps;
+
+    @CommandLine.Option(
+            names = {"--coordinate"},
+            description = "If set, coordinate a portfolio distributed over worker processes connecting to this port",
+            defaultValue = "0"
+    )
+    int coordinatorPort;
+
+    @CommandLine.Option(
+            names = {"--workers"},
+            description = "If a distributed portfolio is coordinated, number of worker processes to wait for",
+            defaultValue = "2"
+    )
+    int nbRemoteWorkers;
+
+    @CommandLine.Option(
+            names = {"--connect"},
+            description = "If set (host:port), run as a worker of a distributed portfolio, using the number of cores " +
+                    "given by -c"
+    )
+    String coordinatorAddress;
+
+    @CommandLine.Option(
+            names = {"--cache-dir"},
+            description = "If set, directory of a cache of results: a request already solved with the same time " +
+                    "limit, or solved to optimality, is answered from the cache"
+    )
+    String cacheDir;
+
+    @CommandLine.Option(
+            names = {"--checkpoint"},
+            description = "If set, file where the state of the search (best plan, bound and statistics) is saved " +
+                    "periodically"
+    )
+    String checkpointFile;
+
+    @CommandLine.Option(
+            names = {"--checkpoint-period"},
+            description = "Period of the checkpoints",
+            defaultValue = "5m"
+    )
+    String checkpointPeriod;
+
+    @CommandLine.Option(
+            names = {"--resume"},
+            description = "If true, resume the search from the checkpoint file, if it exists: its plan is the " +
+                    "incumbent and only better plans are searched",
+            defaultValue = "false"
+    )
+    boolean resume;
+
+    @CommandLine.Option(
+            names = {"--solution-log"},
+            description = "If set, file where each improving plan is appended as soon as it is found, with a " +
+                    "timestamp and its objective value"
+    )
+    String solutionLog;
+
+    @CommandLine.Option(
+            names = {"--profile"},
+            description = "If true, profile the propagation by constraint family (calls, time, filterings and " +
+                    "failures, summed over the workers) and print it at the end of the search",
+            defaultValue = "false"
+    )
+    boolean profile;
+
+    @CommandLine.Option(
+            names = {"--profile-json"},
+            description = "If set, profile the propagation and export the profile as JSON to this file"
+    )
+    String profileJson;
+
+    @CommandLine.Option(
+            names = {"--model-report"},
+            description = "If true, build one model before solving and print its size by constraint family " +
+                    "(constraints, propagators, variables, booleans, table tuples) and the heap it retains, for one " +
+                    "model and for all the workers",
+            defaultValue = "false"
+    )
+    boolean modelReport;
+
+    @CommandLine.Option(
+            names = {"-k", "--diverse"},
+            description = "If greater than 1, find this number of good plans that are pairwise different (see " +
+                    "--min-distance); the time limit is shared between the plans, and each plan is exported next to " +
+                    "the output file",
+            defaultValue = "1"
+    )
+    int nbDiversePlans;
+
+    @CommandLine.Option(
+            names = {"--min-distance"},
+            description = "If several diverse plans are searched, minimum number of needs assigned to different beds " +
+                    "in any two plans (default: a tenth of the needs)",
+            defaultValue = "0"
+    )
+    int minDistance;
 
     @Override
     public void run() {
+        // Positional parameters are optional for the subcommands to be invoked without them
+        if (output == null) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Missing required parameters: "
+                    + "needsFile, bedsFile, interactionsFile, precedenceFile, delaysFile, output");
+        }
         if (verbose) {
             System.out.println("+++VERBOSE mode ");
         }
         Data data;
 
         String[] constraintList = constraints.split(",");
-        boolean includeForbiddenBeds = ArrayUtils.contains(constraintList, "C4");
 
         if (needsFile == null || interactionsFile == null) {
             try {
@@ -186,303 +311,292 @@ public class Main implements Runnable {
             }
         }
 
-        AgroEcoPlanProblem problem;
-        Solution sol;
-        IntVar gain;
-        //IntVar nbBeds;
-        IntVar[] assignments;
-
+        boolean pareto = optimizationObjective.equals("PARETO");
+        SolverConfiguration config = new SolverConfiguration(constraintList, pareto ? "O1" : optimizationObjective, timeout);
+        config.setMinO1(minO1);
+        config.setMinO2(minO2);
+        config.setVerbose(verbose);
         if (parallel) {
-            CustomParallelPortfolio portfolio = new CustomParallelPortfolio();
-            // Instantiate the first instance separately to retrieve variables
-            // Retrieving the value of a variable from a Choco Solution is done by identifying the variable
-            // Through its ID, which is sequentially attributed when a model's variables are created.
-            // Since all models are created identically, IDs are identical across models.
-            problem = new AgroEcoPlanProblem(data, includeForbiddenBeds, verbose);
-            enforceConstraints(problem, constraintList);
-            // Set optimization objective
-            switch (optimizationObjective) {
-                case "O1":
-                    try {
-                        IntVar g = problem.postInteractionConstraints();
-                        problem.setGain(g);
-                        if (minO1 > 0) {
-                            problem.getModel().arithm(g, ">=", minO1).post();
-                        }
-                        if (minO2 > 0) {
-                            IntVar O2 = problem.initNumberOfPositivePrecedencesCountBased();
-                            problem.getModel().arithm(O2, ">=", minO2).post();
-                        }
-                    } catch (AgroEcoPlanProblem.AgroecoplanException e) {
-                        throw new RuntimeException(e);
-                    }
-                    problem.getModel().setObjective(true, problem.getGain());
-                    break;
-                case "O2":
-                    try {
-                        //problem.initNumberOfPositivePrecedences();
-                        IntVar g = problem.initNumberOfPositivePrecedencesCountBased();
-                        problem.setGain(g);
-                        if (minO2 > 0) {
-                            problem.getModel().arithm(g, ">=", minO2).post();
-                        }
-                        if (minO1 > 0) {
-                            IntVar O1 = problem.postInteractionConstraints();
-                            problem.getModel().arithm(O1, ">=", minO1).post();
-                        }
-                    } catch (AgroEcoPlanProblem.AgroecoplanException e) {
-                        throw new RuntimeException(e);
-                    }
-                    problem.getModel().setObjective(true, problem.getGain());
-                case "SAT":
-                    try {
-                        if (minO1 > 0) {
-                            IntVar O1 = problem.postInteractionConstraints();
-                            problem.getModel().arithm(O1, ">=", minO1).post();
-                        }
-                        if (minO2 > 0) {
-                            IntVar O2 = problem.initNumberOfPositivePrecedencesCountBased();
-                            problem.getModel().arithm(O2, ">=", minO2).post();
-                        }
-                    } catch (AgroEcoPlanProblem.AgroecoplanException e) {
-                        throw new RuntimeException(e);
-                    }
-                    problem.getModel().getSolver().limitSolution(1);
-                    break;
-                default:
-                    System.out.println("Warning: incorrect optimization objective key, SAT will be used.");
-            }
-            problem.getModel().getSolver().showShortStatistics();
-            if (timeout != null)
-                problem.getModel().getSolver().limitTime(timeout);
-            portfolio.addModel(problem);
-            for (int i = 1; i < nbCores; i++) {
-                AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data, includeForbiddenBeds, verbose);
-                enforceConstraints(pb, constraintList);
-                // Set optimization objective
-                switch (optimizationObjective) {
-                    case "O1":
-                        try {
-                            IntVar g = pb.postInteractionConstraints();
-                            pb.setGain(g);
-                            if (minO1 > 0) {
-                                pb.getModel().arithm(g, ">=", minO1).post();
-                            }
-                            if (minO2 > 0) {
-                                IntVar O2 = pb.initNumberOfPositivePrecedencesCountBased();
-                                pb.getModel().arithm(O2, ">=", minO2).post();
-                            }
-                        } catch (AgroEcoPlanProblem.AgroecoplanException e) {
-                            throw new RuntimeException(e);
-                        }
-                        pb.getModel().setObjective(true, pb.getGain());
-                        break;
-                    case "O2":
-                        try {
-                            //pb.initNumberOfPositivePrecedences();
-                            IntVar g = pb.initNumberOfPositivePrecedencesCountBased();
-                            pb.setGain(g);
-                            if (minO2 > 0) {
-                                pb.getModel().arithm(g, ">=", minO2).post();
-                            }
-                            if (minO1 > 0) {
-                                IntVar O1 = pb.postInteractionConstraints();
-                                pb.getModel().arithm(O1, ">=", minO1).post();
-                            }
-                        } catch (AgroEcoPlanProblem.AgroecoplanException e) {
-                            throw new RuntimeException(e);
-                        }
-                        pb.getModel().setObjective(true, pb.getGain());
-                    case "SAT":
-                        try {
-                            if (minO1 > 0) {
-                                IntVar O1 = pb.postInteractionConstraints();
-                                pb.getModel().arithm(O1, ">=", minO1).post();
-                            }
-                            if (minO2 > 0) {
-                                IntVar O2 = pb.initNumberOfPositivePrecedencesCountBased();
-                                pb.getModel().arithm(O2, ">=", minO2).post();
-                            }
-                        } catch (AgroEcoPlanProblem.AgroecoplanException e) {
-                            throw new RuntimeException(e);
-                        }
-                        pb.getModel().getSolver().limitSolution(1);
-                        break;
-                    default:
-                        System.out.println("Warning: incorrect optimization objective key, SAT will be used.");
+            config.setParallel(nbCores);
+        }
+        PropagationProfile propagationProfile = null;
+        if (profile || profileJson != null) {
+            propagationProfile = new PropagationProfile();
+            config.setProfile(propagationProfile);
+        }
+        if (modelReport) {
+            ModelReport report = ModelReport.measure(config, data);
+            report.print();
+        }
+        if (checkpointFile != null) {
+            config.setCheckpoint(checkpointFile, checkpointPeriod);
+            if (resume) {
+                Checkpoint checkpoint = Checkpoint.read(checkpointFile);
+                if (checkpoint != null) {
+                    System.out.println("Resuming from checkpoint" + (checkpoint.getObjective() == null ? ""
+                            : " (objective = " + checkpoint.getObjective() + ")"));
+                    config.resumeFrom(checkpoint);
                 }
-                pb.getModel().getSolver().showShortStatistics();
-                if (timeout != null)
-                    pb.getModel().getSolver().limitTime(timeout);
-                portfolio.addModel(pb);
             }
-            portfolio.stealNogoodsOnRestarts();
-            Solution[] sols = portfolio.streamSolutions().toArray(Solution[]::new);
-            problem = portfolio.finderProblem;
-            if (problem == null) {
-                sol = null;
-                gain = null;
-                assignments = null;
-            } else {
-                Model bestModel = problem.getModel();
-                sol = sols[sols.length - 1];
-                gain = problem.getGain();
-                assignments = problem.getAssignment();
+        }
+
+        if (coordinatorAddress != null) {
+            work(data, config);
+            return;
+        }
+        if (pareto) {
+            int nbProcessors = Runtime.getRuntime().availableProcessors();
+            computeParetoFront(data, config, parallel ? nbCores : nbProcessors);
+            return;
+        }
+        if (nbDiversePlans > 1) {
+            int nbProcessors = Runtime.getRuntime().availableProcessors();
+            findDiversePlans(data, config, parallel ? nbCores : nbProcessors);
+            return;
+        }
+
+        SolverConfiguration.Result result = null;
+        ResultCache cache = null;
+        String cacheKey = null;
+        if (cacheDir != null) {
+            cache = new ResultCache(cacheDir);
+            cacheKey = ResultCache.key(data, config, solvingMode());
+            result = cache.lookup(cacheKey, timeout);
+            if (verbose && result != null) {
+                System.out.println("+++RESULT FROM CACHE " + cacheKey);
             }
-        } else {
-            problem = new AgroEcoPlanProblem(data, includeForbiddenBeds, verbose);
-            enforceConstraints(problem, constraintList);
-            // Set optimization objective
-            switch (optimizationObjective) {
-                case "O1":
-                    try {
-                        IntVar g = problem.postInteractionConstraints();
-                        problem.setGain(g);
-                        if (minO1 > 0) {
-                            problem.getModel().arithm(g, ">=", minO1).post();
-                        }
-                        if (minO2 > 0) {
-                            IntVar O2 = problem.initNumberOfPositivePrecedencesCountBased();
-                            problem.getModel().arithm(O2, ">=", minO2).post();
-                        }
-                    } catch (AgroEcoPlanProblem.AgroecoplanException e) {
-                        throw new RuntimeException(e);
-                    }
-                    problem.getModel().setObjective(true, problem.getGain());
-                    break;
-                case "O2":
-                    try {
-                        //problem.initNumberOfPositivePrecedences();
-                        IntVar g = problem.initNumberOfPositivePrecedencesCountBased();
-                        problem.setGain(g);
-                        if (minO2 > 0) {
-                            problem.getModel().arithm(g, ">=", minO2).post();
-                        }
-                        if (minO1 > 0) {
-                            IntVar O1 = problem.postInteractionConstraints();
-                            problem.getModel().arithm(O1, ">=", minO1).post();
-                        }
-                    } catch (AgroEcoPlanProblem.AgroecoplanException e) {
-                        throw new RuntimeException(e);
-                    }
-                    problem.getModel().setObjective(true, problem.getGain());
-                case "SAT":
-                    try {
-                        if (minO1 > 0) {
-                            IntVar O1 = problem.postInteractionConstraints();
-                            problem.getModel().arithm(O1, ">=", minO1).post();
-                        }
-                        if (minO2 > 0) {
-                            IntVar O2 = problem.initNumberOfPositivePrecedencesCountBased();
-                            problem.getModel().arithm(O2, ">=", minO2).post();
-                        }
-                    } catch (AgroEcoPlanProblem.AgroecoplanException e) {
-                        throw new RuntimeException(e);
-                    }
-                    break;
-                default:
-                    System.out.println("Warning: incorrect optimization objective key, SAT will be used.");
+        }
+        if (result == null) {
+            result = solve(data, config);
+            if (cache != null) {
+                cache.store(cacheKey, timeout, result);
             }
-            Solver s = problem.getModel().getSolver();
-            if (timeout != null)
-                s.limitTime(timeout);
-            s.showShortStatistics();
-            s.setSearch(Search.domOverWDegRefSearch(problem.getAssignment()));
-            gain = problem.getGain();
-            assignments = problem.getAssignment();
-            if (optimizationObjective.equals("SAT")) {
-                sol = s.findSolution();
-            } else {
-                sol = s.findOptimalSolution(gain, true);
+        }
+        if (propagationProfile != null) {
+            if (profile) {
+                propagationProfile.print();
+            }
+            if (profileJson != null) {
+                propagationProfile.writeJson(profileJson);
+                System.out.println("Propagation profile exported at: " + profileJson);
             }
         }
-
-        if (sol == null) {
+        if (result.getPlan() == null) {
             System.out.println("NO SOLUTION FOUND");
             return;
         }
-
-        if (gain != null) {
-            if (optimizationObjective.equals("O1")) {
-                System.out.println("Total positive interaction = " + sol.getIntVal(gain));
+        int[] plan = result.getPlan();
+
+        if (result.getObjectiveValue() != null) {
+            if (config.isLexicographic()) {
+                AgroEcoPlanProblem problem = result.getProblem();
+                if (problem != null && problem.getLexicographicObjectives() != null) {
+                    int[] values = problem.decodeLexicographicGain(result.getObjectiveValue());
+                    String[] names = config.getObjective().split(",");
+                    for (int k = 0; k < names.length; k++) {
+                        System.out.println(names[k] + " = " + values[k]);
+                    }
+                } else {
+                    System.out.println("Lexicographic objective = " + result.getObjectiveValue());
+                }
+            } else if (config.getObjective().equals("O1")) {
+                System.out.println("Total positive interaction = " + result.getObjectiveValue());
             } else {
-                System.out.println("Total positive precedences = " + sol.getIntVal(gain));
+                System.out.println("Total positive precedences = " + result.getObjectiveValue());
             }
         }
 
         if (verbose) {
-            int checkedPosInt = 0;
-            for (int i = 0; i < assignments.length; i++) {
-                for (int j = i + 1; j < assignments.length; j++) {
-                    if (data.INTERACTIONS[data.NEEDS_SPECIES[i]][data.NEEDS_SPECIES[j]] >= 1 && problem.getIntervalGraphSets()[i].contains(j)) {
-                        int a = sol.getIntVal(assignments[i]);
-                        int b = sol.getIntVal(assignments[j]);
-                        if (data.ADJACENCY[a].contains(b)) {
-                            checkedPosInt++;
-                        }
-                    }
-                }
+            PlanValidator.Report check = new PlanValidator(data, constraintList).validate(plan);
+            System.out.println("+++Checked pos int = " + check.getO1());
+            if (data.PRECEDENCES != null) {
+                System.out.println("+++Checked pos prec = " + check.getO2());
             }
-            System.out.println("+++Checked pos int = " + checkedPosInt);
-
-            if (problem.showO1Details!=null) {
-                System.out.println("+++" + problem.showO1Details.apply(sol));
+            for (String violation : check.getMessages()) {
+                System.out.println("+++VIOLATION " + violation);
             }
-            if (problem.showO2Details!=null) {
-                System.out.println("+++" + problem.showO2Details.apply(sol));
+
+            AgroEcoPlanProblem problem = result.getProblem();
+            if (problem == null || result.getSolution() == null) {
+                // Portfolio, decompositions and distributed search only report the plan
+                System.out.println("+++O1 and O2 details unavailable: the plan was not found by a single model");
+            } else {
+                if (problem.showO1Details != null) {
+                    System.out.println("+++" + problem.showO1Details.apply(result.getSolution()));
+                }
+                if (problem.showO2Details != null) {
+                    System.out.println("+++" + problem.showO2Details.apply(result.getSolution()));
+                }
             }
         }
 
-        ISet beds = SetFactory.makeConstantSet(Arrays.stream(assignments).mapToInt(v -> sol.getIntVal(v)).toArray());
+        ISet beds = SetFactory.makeConstantSet(plan);
         int nBeds = beds.size();
         System.out.println("Nb beds = " + nBeds);
 
-        int maxWeek = Arrays.stream(data.NEEDS_END).max().getAsInt();
-
-        String[][] solution = new String[problem.getNbMaxBeds()][];
-        for (int i = 1; i < problem.getNbMaxBeds() + 1; i++) {
-            int finalI = i;
-            int[] needs = IntStream.range(0, assignments.length)
-                    .filter(v -> sol.getIntVal(assignments[v]) == finalI)
-                    .toArray();
-            String[] row = new String[maxWeek + 1];
-            row[0] = "Planche " + i;
-            // fill with empty values
-            for (int j = 1; j < maxWeek + 1; j++) {
-                row[j] = "";
+        if (!output.equals("null")) {
+            new PlanExporter(data, data.NB_BEDS, plan).write(output);
+            System.out.println("Solution exported at: " + output);
+        }
+        if (show) {
+            String[] printSol = AgroEcoPlanProblem.getReadableSolution(data, data.NB_BEDS, plan);
+            for (String s : printSol) {
+                System.out.println(s);
+            }
+        }
+    }
+
+    /**
+     * @return the options of {@link #solve} that change the plans found, as part of the key of the result cache
+     */
+    private String solvingMode() {
+        String mode = presolve ? "presolve;" : "";
+        if (coordinatorPort > 0) {
+            return mode + "distributed";
+        } else if (rollingWindow > 0) {
+            return mode + "rolling=" + rollingWindow + "," + rollingOverlap;
+        } else if (eps) {
+            return mode + "eps=" + nbCores;
+        } else if (gardens) {
+            return mode + "gardens";
+        }
+        return mode;
+    }
+
+    /**
+     * Solve the instance with the selected method, after presolving it if asked.
+     * @return the result, whose plan is on the original instance
+     */
+    private SolverConfiguration.Result solve(Data data, SolverConfiguration config) {
+        Presolve pre = null;
+        Data solvedData = data;
+        if (presolve) {
+            pre = new Presolve(data, config);
+            Presolve.Verdict verdict = pre.run();
+            System.out.println(pre.getSummary());
+            if (verdict == Presolve.Verdict.INFEASIBLE) {
+                return new SolverConfiguration.Result(null, null, null, null, true);
             }
-            // replace "" by plant id for the corresponding period
-            for (int n : needs) {
-                for (int w = data.NEEDS_BEGIN[n]; w <= data.NEEDS_END[n]; w++) {
-                    row[w] = "" + n;
+            solvedData = pre.getReducedData();
+        }
+
+        SolutionLog log = null;
+        if (solutionLog != null) {
+            if (coordinatorPort > 0 || rollingWindow > 0 || eps || gardens) {
+                System.out.println("Warning: plans are only streamed to the solution log by the sequential and " +
+                        "portfolio searches.");
+            } else {
+                try {
+                    log = new SolutionLog(solutionLog);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
                 }
+                SolutionLog l = log;
+                Presolve p = pre;
+                config.addSolutionListener((plan, objective, timeMs) ->
+                        l.onSolution(p == null ? plan : p.restore(plan), objective, timeMs));
             }
-            solution[i - 1] = row;
         }
 
-        if (!output.equals("null")) {
-            CSVWriter writer = null;
+        SolverConfiguration.Result result;
+        int nbProcessors = Runtime.getRuntime().availableProcessors();
+        int nbWorkers = parallel ? nbProcessors / nbCores : nbProcessors;
+        if (coordinatorPort > 0) {
             try {
-                writer = (CSVWriter) new CSVWriterBuilder(new FileWriter(output)).withSeparator(';').build();
+                result = new DistributedPortfolio(config).coordinate(coordinatorPort, nbRemoteWorkers);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
+        } else if (rollingWindow > 0) {
+            result = new RollingHorizonSolver(config, rollingWindow, rollingOverlap, nbWorkers).solve(solvedData);
+        } else if (eps) {
+            result = new EmbarrassinglyParallelSearch(config, nbCores).solve(solvedData);
+        } else if (gardens) {
+            result = new GardenDecomposition(config, nbWorkers).solve(solvedData);
+        } else {
+            try (SolutionLog ignored = log) {
+                result = config.solve(solvedData);
+            }
+        }
+        if (pre == null || result.getPlan() == null) {
+            return result;
+        }
+        return new SolverConfiguration.Result(result.getProblem(), result.getSolution(), pre.restore(result.getPlan()),
+                result.getObjectiveValue(), result.isProven());
+    }
 
-            for (String[] row : solution) {
-                writer.writeNext(row, false);
+    private void computeParetoFront(Data data, SolverConfiguration config, int nbWorkers) {
+        List<ParetoFront.Point> front = new ParetoFront(config, nbWorkers).solve(data);
+        if (front.isEmpty()) {
+            System.out.println("NO SOLUTION FOUND");
+            return;
+        }
+        for (ParetoFront.Point p : front) {
+            System.out.println("O1 = " + p.getO1() + ", O2 = " + p.getO2() + (p.isProven() ? "" : " (not proven)"));
+        }
+        if (!output.equals("null")) {
+            String stem = output.endsWith(".csv") ? output.substring(0, output.length() - 4) : output;
+            writeCsv(output, ParetoFront.toTable(front));
+            for (ParetoFront.Point p : front) {
+                new PlanExporter(data, data.NB_BEDS, p.getPlan()).write(stem + "_O1-" + p.getO1() + "_O2-" + p.getO2() + ".csv");
             }
-            try {
-                writer.close();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+            System.out.println("Pareto front exported at: " + output);
+        }
+    }
+
+    private void findDiversePlans(Data data, SolverConfiguration config, int nbWorkers) {
+        int distance = minDistance > 0 ? minDistance : Math.max(1, data.NB_NEEDS / 10);
+        List<SolverConfiguration.Result> plans = new DiversePlans(config, nbDiversePlans, distance, nbWorkers).solve(data);
+        if (plans.isEmpty()) {
+            System.out.println("NO SOLUTION FOUND");
+            return;
+        }
+        for (int k = 0; k < plans.size(); k++) {
+            SolverConfiguration.Result plan = plans.get(k);
+            System.out.println("Plan " + (k + 1) + (plan.getObjectiveValue() == null ? ""
+                    : ": objective = " + plan.getObjectiveValue() + (plan.isProven() ? "" : " (not proven)")));
+        }
+        if (!output.equals("null")) {
+            for (int k = 0; k < plans.size(); k++) {
+                new PlanExporter(data, data.NB_BEDS, plans.get(k).getPlan()).write(PlanExporter.withSuffix(output, "_" + (k + 1)));
             }
-            System.out.println("Solution exported at: " + output);
+            System.out.println(plans.size() + " plans exported at: " + PlanExporter.withSuffix(output, "_*"));
         }
-        if (show) {
-            String[] printSol = problem.getReadableSolution(sol);
-            for (String s : printSol) {
-                System.out.println(s);
+    }
+
+    private static void writeCsv(String path, String[][] rows) {
+        try (CSVWriter writer = (CSVWriter) new CSVWriterBuilder(new FileWriter(path)).withSeparator(';').build()) {
+            for (String[] row : rows) {
+                writer.writeNext(row, false);
             }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Run as a worker of a distributed portfolio.
+     */
+    private void work(Data data, SolverConfiguration config) {
+        Data solvedData = data;
+        if (presolve) {
+            Presolve pre = new Presolve(data, config);
+            Presolve.Verdict verdict = pre.run();
+            System.out.println(pre.getSummary());
+            if (verdict == Presolve.Verdict.INFEASIBLE) {
+                System.out.println("NO SOLUTION FOUND");
+                return;
+            }
+            solvedData = pre.getReducedData();
+        }
+        String[] address = coordinatorAddress.split(":");
+        config.setParallel(nbCores);
+        try {
+            boolean complete = new DistributedPortfolio(config)
+                    .work(solvedData, address[0], Integer.parseInt(address[1]));
+            System.out.println("Worker done (" + (complete ? "complete" : "incomplete") + " search)");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -491,6 +605,16 @@ public class Main implements Runnable {
             new CommandLine(new Main()).usage(System.out);
             return;
         }
-        System.exit(new CommandLine(new Main()).execute(args));
+        CommandLine commandLine = new CommandLine(new Main());
+        int exitCode = commandLine.execute(args);
+        CommandLine.ParseResult subcommand = exitCode == 0 ? commandLine.getParseResult().subcommand() : null;
+        if (subcommand != null && subcommand.commandSpec().userObject() instanceof SolverServer) {
+            // The service keeps running in its own threads
+            return;
+        }
+        if (!Phases.summary().isEmpty()) {
+            System.out.println(Phases.summary());
+        }
+        System.exit(exitCode);
     }
 }
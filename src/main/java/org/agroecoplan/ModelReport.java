@@ -0,0 +1,151 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.variables.BoolVar;
+import org.chocosolver.solver.variables.Variable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size and memory footprint of a model, by constraint label (see {@link AgroEcoPlanProblem#getConstraintLabels}):
+ * number of constraints, propagators, variables created, boolean variables among them (e.g. the reifications of the
+ * objectives) and table tuples. Variables created outside of the constraint families and objectives (assignments,
+ * objective bounds) are counted as "base". The retained heap of a model is measured while it is built, and the
+ * footprint of a portfolio is the footprint of one model multiplied by the number of workers, which is an upper bound
+ * since the instance data and interval graphs are shared.
+ */
+public class ModelReport {
+
+    private static final String[] COLUMNS = {"constraints", "propagators", "variables", "booleans", "tuples"};
+
+    private final Map<String, long[]> sizes = new LinkedHashMap<>();
+    private final long retainedBytes;
+    private final int workers;
+
+    /**
+     * @param retainedBytes heap retained by the model, -1 if unknown
+     * @param workers       number of models solved at the same time
+     */
+    public ModelReport(AgroEcoPlanProblem problem, long retainedBytes, int workers) {
+        this.retainedBytes = retainedBytes;
+        this.workers = workers;
+        sizes.put("base", new long[COLUMNS.length]);
+        for (Map.Entry<Constraint, String> e : problem.getConstraintLabels().entrySet()) {
+            long[] row = sizes.computeIfAbsent(e.getValue(), l -> new long[COLUMNS.length]);
+            row[0]++;
+            row[1] += e.getKey().getPropagators().length;
+        }
+        // Variables not created by a family or an objective are base variables
+        long[] base = sizes.get("base");
+        Variable[] vars = problem.getModel().getVars();
+        base[2] = vars.length;
+        base[3] = Arrays.stream(vars).filter(v -> v instanceof BoolVar).count();
+        for (Map.Entry<String, long[]> e : problem.getPostedSizes().entrySet()) {
+            long[] row = sizes.computeIfAbsent(e.getKey(), l -> new long[COLUMNS.length]);
+            System.arraycopy(e.getValue(), 0, row, 2, 3);
+            base[2] -= e.getValue()[0];
+            base[3] -= e.getValue()[1];
+        }
+    }
+
+    /**
+     * Build a model of the instance with the configuration, and report its size and the heap it retains. The heap is
+     * measured after garbage collections, so the measure is only an estimate, made before any search.
+     */
+    public static ModelReport measure(SolverConfiguration config, Data data) {
+        // Interval graphs are shared by the workers of a portfolio
+        IntervalGraphs graphs = new IntervalGraphs(data);
+        long before = usedHeap();
+        AgroEcoPlanProblem problem = config.buildProblem(data, graphs);
+        long retained = usedHeap() - before;
+        return new ModelReport(problem, Math.max(0, retained), config.isParallel() ? config.getNbCores() : 1);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return for each label, the number of constraints, propagators, variables, boolean variables and table tuples
+     * of one model
+     */
+    public Map<String, long[]> getSizes() {
+        return sizes;
+    }
+
+    public long[] getTotal() {
+        long[] total = new long[COLUMNS.length];
+        for (long[] row : sizes.values()) {
+            for (int c = 0; c < COLUMNS.length; c++) {
+                total[c] += row[c];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the heap retained by one model in bytes, -1 if unknown
+     */
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return true if the models of all the workers are estimated to fit in the maximum heap of this JVM
+     */
+    public boolean fits() {
+        return retainedBytes < 0 || retainedBytes * workers <= Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * @return a table of the sizes, with a header line, one line per label, the total of one model and, if there are
+     * several workers, the total of all the workers
+     */
+    public String[][] toTable() {
+        String[][] table = new String[sizes.size() + (workers > 1 ? 3 : 2)][];
+        table[0] = new String[]{"label", COLUMNS[0], COLUMNS[1], COLUMNS[2], COLUMNS[3], COLUMNS[4]};
+        int k = 1;
+        for (Map.Entry<String, long[]> e : sizes.entrySet()) {
+            table[k++] = row(e.getKey(), e.getValue(), 1);
+        }
+        table[k++] = row("total", getTotal(), 1);
+        if (workers > 1) {
+            table[k] = row("x" + workers, getTotal(), workers);
+        }
+        return table;
+    }
+
+    private static String[] row(String label, long[] values, int factor) {
+        String[] row = new String[COLUMNS.length + 1];
+        row[0] = label;
+        for (int c = 0; c < COLUMNS.length; c++) {
+            row[c + 1] = String.valueOf(values[c] * factor);
+        }
+        return row;
+    }
+
+    /**
+     * Print the sizes, one line per label, and the estimated heap footprint.
+     */
+    public void print() {
+        for (String[] row : toTable()) {
+            System.out.println(String.format("%-10s %12s %12s %12s %12s %12s", (Object[]) row));
+        }
+        if (retainedBytes >= 0) {
+            long maxMb = Runtime.getRuntime().maxMemory() >> 20;
+            System.out.println("Retained heap: " + (retainedBytes >> 20) + " MB per model, "
+                    + ((retainedBytes * workers) >> 20) + " MB for " + workers + " worker(s), max heap " + maxMb
+                    + " MB" + (fits() ? "" : " -> WARNING: the models may not fit in the heap"));
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.search.SearchState;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Pareto front of the objectives O1 (positive interactions) and O2 (positive precedences), computed with the
+ * epsilon-constraint method: for a level e, O1 is maximized under O2 &gt;= e. Workers solve different levels
+ * concurrently, and share what they learn:
+ * <ul>
+ *     <li>a plan (o1, o2) found at level e also solves the levels e+1..o2 if it is optimal, so these levels are
+ *     skipped, and workers busy on them are stopped; if the search of level e was not complete, these levels are
+ *     skipped as well, the plan standing for them as a point not proven;</li>
+ *     <li>a plan (o1, o2) is an incumbent for all the levels up to o2: only better values of O1 are searched;</li>
+ *     <li>the optimum of a level bounds the values of O1 at higher levels, as the front is non-increasing;</li>
+ *     <li>a level without any solution makes all the higher levels infeasible.</li>
+ * </ul>
+ * Levels are chosen by splitting the largest range of unexplored levels, starting from 0 and the upper bound of O2.
+ * Each level is given the time limit of the configuration, and points found at a level whose search was not
+ * complete are reported as not proven, as are the levels they stand for.
+ */
+public class ParetoFront {
+
+    /**
+     * A point of the front, with one of its plans.
+     */
+    public static class Point {
+
+        private final int o1;
+        private final int o2;
+        private final int[] plan;
+        private final boolean proven;
+
+        Point(int o1, int o2, int[] plan, boolean proven) {
+            this.o1 = o1;
+            this.o2 = o2;
+            this.plan = plan;
+            this.proven = proven;
+        }
+
+        public int getO1() {
+            return o1;
+        }
+
+        public int getO2() {
+            return o2;
+        }
+
+        public int[] getPlan() {
+            return plan;
+        }
+
+        /**
+         * @return true if the level this point was found at was solved to optimality
+         */
+        public boolean isProven() {
+            return proven;
+        }
+
+        boolean dominates(Point p) {
+            return o1 >= p.o1 && o2 >= p.o2 && (o1 > p.o1 || o2 > p.o2);
+        }
+    }
+
+    private final SolverConfiguration config;
+    private final int minO2;
+    private final int nbWorkers;
+
+    // Shared state, guarded by this; covered is also read without the lock by the stop criteria of the searches
+    private AtomicIntegerArray covered;
+    private boolean[] taken;
+    private final List<Point> points = new ArrayList<>();
+    private final List<int[]> provenOptima = new ArrayList<>();
+
+    /**
+     * @param config    constraints and time limit per level; the objective is ignored
+     * @param nbWorkers number of levels solved simultaneously
+     */
+    public ParetoFront(SolverConfiguration config, int nbWorkers) {
+        // The lower bound of O2 is posted with the level, on the same variable
+        this.config = config.withObjective("O1");
+        this.config.setMinO2(0);
+        this.minO2 = config.getMinO2();
+        this.nbWorkers = nbWorkers;
+    }
+
+    /**
+     * @return the non-dominated points found, by increasing O2
+     */
+    public List<Point> solve(Data data) {
+        if (data.PRECEDENCES == null) {
+            throw new IllegalArgumentException("The Pareto front needs the precedences between species");
+        }
+        IntervalGraphs graphs = new IntervalGraphs(data);
+        int maxO2 = buildLevel(data, graphs, 0).o2.getUB();
+        covered = new AtomicIntegerArray(maxO2 + 1);
+        taken = new boolean[maxO2 + 1];
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < nbWorkers; w++) {
+                futures.add(executor.submit(() -> {
+                    int level;
+                    while ((level = nextLevel()) >= 0) {
+                        solveLevel(data, graphs, level);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        List<Point> front = new ArrayList<>();
+        for (Point p : points) {
+            if (points.stream().noneMatch(q -> q.dominates(p))
+                    && front.stream().noneMatch(q -> q.o1 == p.o1 && q.o2 == p.o2)) {
+                front.add(p);
+            }
+        }
+        front.sort(Comparator.comparingInt(Point::getO2));
+        return front;
+    }
+
+    private static class Level {
+        AgroEcoPlanProblem problem;
+        IntVar o2;
+    }
+
+    private Level buildLevel(Data data, IntervalGraphs graphs, int epsilon) {
+        Level level = new Level();
+        level.problem = config.buildProblem(data, graphs);
+        try {
+            level.o2 = level.problem.initNumberOfPositivePrecedencesCountBased();
+        } catch (AgroEcoPlanProblem.AgroecoplanException e) {
+            throw new RuntimeException(e);
+        }
+        if (Math.max(epsilon, minO2) > 0) {
+            level.problem.getModel().arithm(level.o2, ">=", Math.max(epsilon, minO2)).post();
+        }
+        return level;
+    }
+
+    private void solveLevel(Data data, IntervalGraphs graphs, int epsilon) {
+        Level level = buildLevel(data, graphs, epsilon);
+        AgroEcoPlanProblem problem = level.problem;
+        Solver s = problem.getModel().getSolver();
+        s.setSearch(Search.domOverWDegRefSearch(problem.getAssignment()));
+        if (config.getTimeout() != null) {
+            s.limitTime(config.getTimeout());
+        }
+        // Level solved by another worker in the meantime
+        s.addStopCriterion(() -> isCovered(epsilon));
+        Point incumbent = incumbent(epsilon);
+        if (incumbent != null) {
+            s.getObjectiveManager().updateBestSolution(incumbent.o1);
+        }
+        Integer upperBound = upperBound(epsilon);
+        if (upperBound != null) {
+            problem.getModel().arithm(problem.getGain(), "<=", upperBound).post();
+        }
+        Point best = null;
+        while (s.solve()) {
+            best = new Point(problem.getGain().getValue(), level.o2.getValue(),
+                    Arrays.stream(problem.getAssignment()).mapToInt(IntVar::getValue).toArray(), false);
+        }
+        boolean complete = s.getSearchState() == SearchState.TERMINATED;
+        if (config.isVerbose()) {
+            System.out.println("+++LEVEL O2 >= " + epsilon + ": " + (best == null ? "no better plan"
+                    : "O1 = " + best.o1 + ", O2 = " + best.o2) + (complete ? "" : " (incomplete)"));
+        }
+        report(epsilon, best == null ? null : new Point(best.o1, best.o2, best.plan, complete), incumbent, complete);
+    }
+
+    private synchronized int nextLevel() {
+        // Largest range of levels neither covered nor taken
+        int bestStart = -1;
+        int bestLength = 0;
+        for (int e = 0; e < covered.length(); ) {
+            if (isCovered(e) || taken[e]) {
+                e++;
+                continue;
+            }
+            int start = e;
+            while (e < covered.length() && !isCovered(e) && !taken[e]) {
+                e++;
+            }
+            if (e - start > bestLength) {
+                bestStart = start;
+                bestLength = e - start;
+            }
+        }
+        if (bestStart < 0) {
+            return -1;
+        }
+        // Extend the known part of the front if possible, otherwise explore the middle of the range
+        int level = (bestStart == 0 || isCovered(bestStart - 1)) ? bestStart : bestStart + bestLength / 2;
+        taken[level] = true;
+        return level;
+    }
+
+    /**
+     * @return true if the level is covered, without locking as it is checked at every node of the searches
+     */
+    private boolean isCovered(int epsilon) {
+        return covered.get(epsilon) == 1;
+    }
+
+    /**
+     * @return the known point with the best O1 among those satisfying O2 &gt;= epsilon
+     */
+    private synchronized Point incumbent(int epsilon) {
+        return points.stream().filter(p -> p.o2 >= epsilon).max(Comparator.comparingInt(Point::getO1)).orElse(null);
+    }
+
+    /**
+     * @return the lowest proven optimum of O1 at a level below epsilon
+     */
+    private synchronized Integer upperBound(int epsilon) {
+        return provenOptima.stream().filter(o -> o[0] <= epsilon).map(o -> o[1]).min(Integer::compare).orElse(null);
+    }
+
+    private synchronized void report(int epsilon, Point found, Point incumbent, boolean complete) {
+        if (isCovered(epsilon)) {
+            // Another worker solved this level first
+            return;
+        }
+        taken[epsilon] = false;
+        if (found != null) {
+            points.add(found);
+            // Levels up to found.o2 are skipped even if not proven: their optimum is at least found.o1
+            coverUpTo(epsilon, found.o2);
+            if (complete) {
+                provenOptima.add(new int[]{epsilon, found.o1});
+            }
+        } else if (complete && incumbent != null) {
+            // Nothing better than the incumbent, which is optimal for this level
+            coverUpTo(epsilon, incumbent.o2);
+            provenOptima.add(new int[]{epsilon, incumbent.o1});
+        } else if (complete) {
+            // Infeasible, and so are all the higher levels
+            coverUpTo(epsilon, covered.length() - 1);
+        } else {
+            covered.set(epsilon, 1);
+        }
+    }
+
+    private void coverUpTo(int from, int to) {
+        for (int e = from; e <= Math.min(to, covered.length() - 1); e++) {
+            covered.set(e, 1);
+        }
+    }
+
+    /**
+     * @return a table of the front, with a header line: O1, O2, proven
+     */
+    public static String[][] toTable(List<Point> front) {
+        String[][] table = new String[front.size() + 1][];
+        table[0] = new String[]{"O1", "O2", "proven"};
+        for (int k = 0; k < front.size(); k++) {
+            Point p = front.get(k);
+            table[k + 1] = new String[]{String.valueOf(p.o1), String.valueOf(p.o2), String.valueOf(p.proven)};
+        }
+        return table;
+    }
+}
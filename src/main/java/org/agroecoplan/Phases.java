@@ -0,0 +1,111 @@
+package org.agroecoplan;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Timing of the phases of the solve pipeline (parsing, interval graphs, cliques, posting of each constraint family,
+ * objective, portfolio preparation, search, first solution, export). Each phase emits a Java Flight Recorder event
+ * (org.agroecoplan.Phase) with its duration and size, e.g. when the JVM is started with
+ * -XX:StartFlightRecording, and its duration is added to a summary of the process. Phases run by several threads
+ * (e.g. models built concurrently) are summed.
+ * <pre>
+ * try (Phases.Phase phase = Phases.start("cliques")) {
+ *     List&lt;ISet&gt; cliques = ChordalGraphUtils.findMaximalCliques(graph);
+ *     phase.setSize(cliques.size());
+ * }
+ * </pre>
+ */
+public class Phases {
+
+    @Name("org.agroecoplan.Phase")
+    @Label("Solve Pipeline Phase")
+    @Category("AgroEcoPlan")
+    @Description("A phase of the solve pipeline, with the size of what it processed")
+    static class PhaseEvent extends Event {
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Size")
+        @Description("Size processed by the phase: needs, cliques, constraints, models or solutions")
+        long size;
+    }
+
+    /**
+     * A running phase, ended when closed.
+     */
+    public static class Phase implements AutoCloseable {
+
+        private final PhaseEvent event = new PhaseEvent();
+        private final long start = System.nanoTime();
+        private boolean closed = false;
+
+        private Phase(String name) {
+            event.phase = name;
+            event.begin();
+        }
+
+        public void setSize(long size) {
+            event.size = size;
+        }
+
+        /**
+         * End the phase, record its duration and emit its event. Only the first call has an effect, so that a
+         * phase ended from another thread (e.g. by the first solution) can be closed again safely.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            event.end();
+            event.commit();
+            DURATIONS.computeIfAbsent(event.phase, p -> new AtomicLong()).addAndGet(System.nanoTime() - start);
+        }
+
+        /**
+         * End the phase without recording it, unless it is already closed: later calls to {@link #close()} have no
+         * effect. Used for a phase that only makes sense if it ends in time (e.g. the first solution of a search).
+         */
+        public synchronized void discard() {
+            closed = true;
+        }
+    }
+
+    private static final Map<String, AtomicLong> DURATIONS = new ConcurrentSkipListMap<>();
+
+    private Phases() {
+    }
+
+    public static Phase start(String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * @return the total duration of each phase since the start of the process (or the last reset), in
+     * milliseconds, on one line (e.g. "Phases (ms): graphs=12 objective=85 parse=130 search=60000"), or an empty
+     * string if no phase was run
+     */
+    public static String summary() {
+        if (DURATIONS.isEmpty()) {
+            return "";
+        }
+        return DURATIONS.entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue().get() / 1_000_000)
+                .collect(Collectors.joining(" ", "Phases (ms): ", ""));
+    }
+
+    public static void reset() {
+        DURATIONS.clear();
+    }
+}
@@ -0,0 +1,233 @@
+package org.agroecoplan;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Export a plan, streamed from its {@link BedTimelines} to a buffered output, in one of these formats:
+ * <ul>
+ *     <li>CSV: one line per bed, with the bed name and, for each week, the need cultivated on the bed (the format
+ *     of {@link AgroEcoPlanProblem#getCsvSolution});</li>
+ *     <li>JSON: the needs of each bed, with their species and weeks;</li>
+ *     <li>binary: a compact plan, the bed of each need, that can be read back with {@link #readBinary}.</li>
+ * </ul>
+ * The format of a file is chosen from its extension (.json, .plan, otherwise CSV).
+ */
+public class PlanExporter {
+
+    /**
+     * Binary format: magic number, number of needs, number of beds, then the bed of each need, as an unsigned short
+     * if there are less than 65536 beds, as an int otherwise. All numbers are big-endian.
+     */
+    private static final int MAGIC = 0x41455031;
+
+    private final BedTimelines timelines;
+    private final int[] plan;
+
+    /**
+     * @param nbBeds number of beds, numbered from 1 in the plan
+     * @param plan   the bed of each need
+     */
+    public PlanExporter(Data data, int nbBeds, int[] plan) {
+        this.timelines = new BedTimelines(data, nbBeds, plan);
+        this.plan = plan;
+    }
+
+    public BedTimelines getTimelines() {
+        return timelines;
+    }
+
+    /**
+     * Write the plan to a file, in the format given by its extension.
+     */
+    public void write(String path) {
+        try (Phases.Phase phase = Phases.start("export")) {
+            phase.setSize(plan.length);
+            if (path.endsWith(".plan")) {
+                try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    writeBinary(channel);
+                }
+            } else {
+                try (Writer writer = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+                    if (path.endsWith(".json")) {
+                        writeJson(writer);
+                    } else {
+                        writeCsv(writer);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Write the plan as CSV, separated by ';'. Rows are streamed: only the weeks of one bed are held in memory.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        Writer writer = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+        int maxWeek = timelines.getMaxWeek();
+        int[] week = new int[maxWeek + 1];
+        for (int bed = 1; bed <= timelines.getNbBeds(); bed++) {
+            Arrays.fill(week, -1);
+            for (int k = 0; k < timelines.size(bed); k++) {
+                int need = timelines.getNeed(bed, k);
+                for (int w = Math.max(1, timelines.getData().NEEDS_BEGIN[need]); w <= timelines.getData().NEEDS_END[need]; w++) {
+                    week[w] = need;
+                }
+            }
+            writer.write("Planche ");
+            writer.write(Integer.toString(bed));
+            for (int w = 1; w <= maxWeek; w++) {
+                writer.write(';');
+                if (week[w] >= 0) {
+                    writer.write(Integer.toString(week[w]));
+                }
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write the plan as JSON:
+     * <pre>
+     * {"beds": [{"bed": 1, "crops": [{"need": 3, "species": "carotte", "begin": 10, "end": 22}, ...]}, ...]}
+     * </pre>
+     */
+    public void writeJson(Writer out) throws IOException {
+        Writer writer = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+        Data data = timelines.getData();
+        writer.write("{\"beds\": [");
+        for (int bed = 1; bed <= timelines.getNbBeds(); bed++) {
+            writer.write(bed > 1 ? ",\n  " : "\n  ");
+            writer.write("{\"bed\": ");
+            writer.write(Integer.toString(bed));
+            writer.write(", \"crops\": [");
+            for (int k = 0; k < timelines.size(bed); k++) {
+                int need = timelines.getNeed(bed, k);
+                if (k > 0) {
+                    writer.write(", ");
+                }
+                writer.write("{\"need\": ");
+                writer.write(Integer.toString(need));
+                writer.write(", \"species\": ");
+                writeJsonString(writer, data.SPECIES[data.NEEDS_SPECIES[need]]);
+                writer.write(", \"begin\": ");
+                writer.write(Integer.toString(data.NEEDS_BEGIN[need]));
+                writer.write(", \"end\": ");
+                writer.write(Integer.toString(data.NEEDS_END[need]));
+                writer.write('}');
+            }
+            writer.write("]}");
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    private static void writeJsonString(Writer writer, String s) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Write the plan in the compact binary format.
+     */
+    public void writeBinary(WritableByteChannel channel) throws IOException {
+        boolean shortBeds = timelines.getNbBeds() < 65536;
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        buffer.putInt(MAGIC).putInt(plan.length).putInt(timelines.getNbBeds());
+        for (int bed : plan) {
+            if (buffer.remaining() < 4) {
+                drain(buffer, channel);
+            }
+            if (shortBeds) {
+                buffer.putShort((short) bed);
+            } else {
+                buffer.putInt(bed);
+            }
+        }
+        drain(buffer, channel);
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Read a plan written in the binary format.
+     * @return the bed of each need
+     */
+    public static int[] readBinary(String path) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return readBinary(channel);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static int[] readBinary(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(12);
+        fill(header, channel);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a binary plan");
+        }
+        int nbNeeds = header.getInt();
+        int nbBeds = header.getInt();
+        boolean shortBeds = nbBeds < 65536;
+        ByteBuffer body = ByteBuffer.allocate(nbNeeds * (shortBeds ? 2 : 4));
+        fill(body, channel);
+        int[] plan = new int[nbNeeds];
+        for (int i = 0; i < nbNeeds; i++) {
+            plan[i] = shortBeds ? Short.toUnsignedInt(body.getShort()) : body.getInt();
+        }
+        return plan;
+    }
+
+    private static void fill(ByteBuffer buffer, ReadableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Truncated binary plan");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * @return the path of a file next to the given one, with a suffix before its extension (e.g. plan_2.csv)
+     */
+    static String withSuffix(String path, String suffix) {
+        Path p = Paths.get(path);
+        String name = p.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String renamed = dot < 0 ? name + suffix : name.substring(0, dot) + suffix + name.substring(dot);
+        return p.resolveSibling(renamed).toString();
+    }
+}
@@ -0,0 +1,116 @@
+package org.agroecoplan;
+
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvException;
+import picocli.CommandLine;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Check plans exported by the solver (CSV or binary plans, see {@link PlanExporter}) against an instance, and
+ * report their violations and objective values (see {@link PlanValidator}). The exit code is 1 if a plan is invalid.
+ */
+@CommandLine.Command(
+        name = "validate",
+        description = "Check plans against an instance and compute their objective values"
+)
+public class PlanValidationCommand implements Callable<Integer> {
+
+    @CommandLine.Parameters(
+            index = "0",
+            description = "Path of the CSV file describing the crop calendar"
+    )
+    String needsFile;
+
+    @CommandLine.Parameters(
+            index = "1",
+            description = "Path of the CSV file describing the farm (vegetable beds and their adjacency relation)"
+    )
+    String bedsFile;
+
+    @CommandLine.Parameters(
+            index = "2",
+            description = "Path of the CSV file describing interactions between species"
+    )
+    String interactionsFile;
+
+    @CommandLine.Parameters(
+            index = "3..*",
+            description = "Plans to check (.csv or .plan files)"
+    )
+    List<String> plans;
+
+    @CommandLine.Option(
+            names = {"--precedences"},
+            description = "Path of the CSV file describing precedences interactions between species"
+    )
+    String precedenceFile;
+
+    @CommandLine.Option(
+            names = {"--delays"},
+            description = "Path of the CSV file describing delay interactions between species"
+    )
+    String delaysFile;
+
+    @CommandLine.Option(
+            names = {"-cst", "--constraints"},
+            description = "Comma-separated list of the constraints to check (e.g. -cst C1,C2)",
+            defaultValue = ""
+    )
+    String constraints;
+
+    @CommandLine.Option(
+            names = {"-v", "--verbose"},
+            description = "If true, describe the violations of each plan",
+            defaultValue = "false"
+    )
+    boolean verbose;
+
+    @Override
+    public Integer call() {
+        Data data;
+        try {
+            data = new Data(needsFile, interactionsFile, bedsFile, precedenceFile, delaysFile);
+        } catch (IOException | CsvException e) {
+            throw new RuntimeException(e);
+        }
+        PlanValidator validator = new PlanValidator(data, constraints.split(","));
+        boolean allValid = true;
+        System.out.println("plan;valid;violations;O1;O2");
+        for (String path : plans) {
+            PlanValidator.Report report = validator.validate(readPlan(path, data));
+            allValid &= report.isValid();
+            StringBuilder violations = new StringBuilder();
+            for (Map.Entry<String, Integer> e : report.getViolations().entrySet()) {
+                violations.append(violations.length() > 0 ? "," : "").append(e.getKey()).append('=').append(e.getValue());
+            }
+            System.out.println(path + ";" + report.isValid() + ";" + violations + ";" + report.getO1() + ";"
+                    + (data.PRECEDENCES == null ? "" : report.getO2()));
+            if (verbose) {
+                for (String message : report.getMessages()) {
+                    System.out.println("    " + message);
+                }
+            }
+        }
+        return allValid ? 0 : 1;
+    }
+
+    private static int[] readPlan(String path, Data data) {
+        if (path.endsWith(".plan")) {
+            return PlanExporter.readBinary(path);
+        }
+        CSVParser csvParser = new CSVParserBuilder().withSeparator(';').withIgnoreQuotations(true).build();
+        try (CSVReader reader = new CSVReaderBuilder(new FileReader(path)).withCSVParser(csvParser).build()) {
+            return PlanValidator.parseCsvPlan(reader.readAll(), data.NB_NEEDS);
+        } catch (IOException | CsvException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.agroecoplan;
+
+import org.chocosolver.util.objects.setDataStructures.ISet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Check a plan against an instance, independently of any model, and compute its objective values. The plan is
+ * inverted into {@link BedTimelines}, and the adjacency of the beds is stored in bitsets, so that only the needs
+ * cultivated on the same or on neighbouring beds are compared: a plan is checked in a time linear in the number of
+ * needs and in the number of needs per bed, instead of comparing all the pairs of needs.
+ * The following violations are reported:
+ * <ul>
+ *     <li>plan: the plan does not give one bed per need of the instance;</li>
+ *     <li>bed: a need is not assigned to an existing bed;</li>
+ *     <li>fixed: a need is not assigned to its fixed bed;</li>
+ *     <li>overlap: two needs cultivated at the same time on the same bed;</li>
+ *     <li>C1 to C6: the constraints of the configuration (see {@link SolverConfiguration}).</li>
+ * </ul>
+ * A validator can be shared by threads validating different plans of the same instance.
+ */
+public class PlanValidator {
+
+    /**
+     * Maximum number of violation messages kept by a report, violations are all counted anyway.
+     */
+    private static final int MAX_MESSAGES = 100;
+
+    /**
+     * Outcome of a validation.
+     */
+    public static class Report {
+
+        private final Map<String, Integer> violations = new LinkedHashMap<>();
+        private final List<String> messages = new ArrayList<>();
+        private int o1;
+        private int o2;
+
+        private void violation(String kind, String message) {
+            violations.merge(kind, 1, Integer::sum);
+            if (messages.size() < MAX_MESSAGES) {
+                messages.add(kind + ": " + message);
+            }
+        }
+
+        public boolean isValid() {
+            return violations.isEmpty();
+        }
+
+        /**
+         * @return the number of violations of each kind (plan, bed, fixed, overlap, C1 to C6)
+         */
+        public Map<String, Integer> getViolations() {
+            return Collections.unmodifiableMap(violations);
+        }
+
+        public int getNbViolations() {
+            return violations.values().stream().mapToInt(Integer::intValue).sum();
+        }
+
+        /**
+         * @return a description of the first violations
+         */
+        public List<String> getMessages() {
+            return Collections.unmodifiableList(messages);
+        }
+
+        /**
+         * @return the number of positive interactions between adjacent needs cultivated at the same time
+         */
+        public int getO1() {
+            return o1;
+        }
+
+        /**
+         * @return the number of positive precedences between needs directly following each other on a bed, 0 if
+         * the instance has no precedences
+         */
+        public int getO2() {
+            return o2;
+        }
+    }
+
+    private final Data data;
+    private final String[] constraints;
+    private final BitSet[] adjacency;
+    private final int[][] neighbours;
+
+    /**
+     * @param constraints constraints to check (C1 to C6), in addition to the bed assignment and overlaps
+     */
+    public PlanValidator(Data data, String[] constraints) {
+        this.data = data;
+        this.constraints = constraints;
+        this.adjacency = new BitSet[data.NB_BEDS + 1];
+        this.neighbours = new int[data.NB_BEDS + 1][];
+        for (int b = 1; b <= data.NB_BEDS; b++) {
+            adjacency[b] = new BitSet(data.NB_BEDS + 1);
+            for (int a : data.ADJACENCY[b]) {
+                adjacency[b].set(a);
+            }
+        }
+        for (int b = 1; b <= data.NB_BEDS; b++) {
+            // Beds to compare with: beds adjacent to it or listing it as adjacent (C3, O1), since the adjacency of
+            // the beds file may not be symmetric, and beds numbered next to it (C2)
+            BitSet candidates = (BitSet) adjacency[b].clone();
+            for (int a = 1; a <= data.NB_BEDS; a++) {
+                if (adjacency[a].get(b)) {
+                    candidates.set(a);
+                }
+            }
+            candidates.set(b - 1);
+            if (b < data.NB_BEDS) {
+                candidates.set(b + 1);
+            }
+            candidates.clear(0);
+            candidates.clear(b);
+            neighbours[b] = candidates.stream().toArray();
+        }
+    }
+
+    private boolean enforces(String constraint) {
+        for (String c : constraints) {
+            if (c.equals(constraint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param plan the bed of each need, numbered from 1
+     */
+    public Report validate(int[] plan) {
+        Report report = new Report();
+        if (plan.length != data.NB_NEEDS) {
+            report.violation("plan", "the plan has " + plan.length + " needs instead of " + data.NB_NEEDS);
+            return report;
+        }
+        boolean assigned = true;
+        for (int i = 0; i < plan.length; i++) {
+            if (plan[i] < 1 || plan[i] > data.NB_BEDS) {
+                report.violation("bed", "need " + i + " is assigned to bed " + plan[i]);
+                assigned = false;
+            } else if (data.NEEDS_FIXED_BED[i] >= 0 && plan[i] != data.NEEDS_FIXED_BED[i]) {
+                report.violation("fixed", "need " + i + " is on bed " + plan[i] + " instead of "
+                        + data.NEEDS_FIXED_BED[i]);
+            } else if (enforces("C4") && data.NEEDS_FIXED_BED[i] < 0 && data.NEEDS_FORBIDDEN_BEDS[i].contains(plan[i])) {
+                report.violation("C4", "need " + i + " is on forbidden bed " + plan[i]);
+            }
+        }
+        if (!assigned) {
+            // Timelines need every need on an existing bed
+            return report;
+        }
+        BedTimelines timelines = new BedTimelines(data, data.NB_BEDS, plan);
+        for (int bed = 1; bed <= data.NB_BEDS; bed++) {
+            checkBed(timelines, bed, report);
+            checkNeighbours(timelines, bed, report);
+        }
+        if (enforces("C5")) {
+            checkGroups(plan, report);
+        }
+        return report;
+    }
+
+    /**
+     * Needs of the same bed: overlaps, return delays (C1), and precedences (C6, O2).
+     */
+    private void checkBed(BedTimelines timelines, int bed, Report report) {
+        int size = timelines.size(bed);
+        // Need of the bed ending last among those already visited
+        int lastEnding = -1;
+        for (int k = 0; k < size; k++) {
+            int need = timelines.getNeed(bed, k);
+            if (lastEnding >= 0 && data.NEEDS_BEGIN[need] <= data.NEEDS_END[lastEnding]) {
+                report.violation("overlap", "needs " + lastEnding + " and " + need + " on bed " + bed);
+            }
+            if (lastEnding < 0 || data.NEEDS_END[need] > data.NEEDS_END[lastEnding]) {
+                lastEnding = need;
+            }
+            if (k > 0 && data.PRECEDENCES != null) {
+                int previous = timelines.getNeed(bed, k - 1);
+                int precedence = data.PRECEDENCES[data.NEEDS_SPECIES[need]][data.NEEDS_SPECIES[previous]];
+                if (precedence == 1) {
+                    report.o2++;
+                } else if (precedence < 0 && enforces("C6") && data.NEEDS_BEGIN[previous] < data.NEEDS_BEGIN[need]) {
+                    report.violation("C6", "need " + need + " follows need " + previous + " on bed " + bed);
+                }
+            }
+        }
+        if (enforces("C1")) {
+            for (int k = 0; k < size; k++) {
+                int i = timelines.getNeed(bed, k);
+                for (int l = k + 1; l < size; l++) {
+                    int j = timelines.getNeed(bed, l);
+                    if (!IntervalGraphs.overlap(data, i, j)
+                            && (IntervalGraphs.rotationConflict(data, i, j) || IntervalGraphs.rotationConflict(data, j, i))) {
+                        report.violation("C1", "needs " + i + " and " + j + " on bed " + bed
+                                + " do not respect their return delay");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Needs of neighbouring beds cultivated at the same time: negative interactions (C2), dilution (C3), and
+     * positive interactions (O1). Each pair of beds is visited once, from its lowest bed, and each pair of needs is
+     * evaluated as the model does, from the need of lowest index: the interaction of its species with the other one,
+     * and the adjacency listed for its bed.
+     */
+    private void checkNeighbours(BedTimelines timelines, int bed, Report report) {
+        boolean c2 = enforces("C2");
+        boolean c3 = enforces("C3");
+        for (int other : neighbours[bed]) {
+            if (other < bed) {
+                continue;
+            }
+            boolean close = other - bed <= 1;
+            for (int k = 0; k < timelines.size(bed); k++) {
+                int i = timelines.getNeed(bed, k);
+                for (int l = 0; l < timelines.size(other); l++) {
+                    int j = timelines.getNeed(other, l);
+                    if (data.NEEDS_BEGIN[j] > data.NEEDS_END[i]) {
+                        // Needs of the other bed are sorted by beginning week
+                        break;
+                    }
+                    if (!IntervalGraphs.overlap(data, i, j)) {
+                        continue;
+                    }
+                    int first = Math.min(i, j);
+                    int second = Math.max(i, j);
+                    boolean adjacent = first == i ? adjacency[bed].get(other) : adjacency[other].get(bed);
+                    int interaction = data.INTERACTIONS[data.NEEDS_SPECIES[first]][data.NEEDS_SPECIES[second]];
+                    if (adjacent && interaction == 1) {
+                        report.o1++;
+                    }
+                    if (c2 && close && interaction < 0) {
+                        report.violation("C2", "needs " + first + " and " + second + " interact negatively on beds "
+                                + bed + " and " + other);
+                    }
+                    if (c3 && adjacent && data.NEEDS_SPECIES[i] == data.NEEDS_SPECIES[j]) {
+                        report.violation("C3", "needs " + first + " and " + second + " of the same species on beds "
+                                + bed + " and " + other);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Groups of identical needs (C5) must be cultivated on consecutive beds, each adjacent to the next.
+     */
+    private void checkGroups(int[] plan, Report report) {
+        for (ISet group : data.GROUPS) {
+            int first = Integer.MAX_VALUE;
+            int last = Integer.MIN_VALUE;
+            BitSet beds = new BitSet();
+            for (int i : group) {
+                first = Math.min(first, plan[i]);
+                last = Math.max(last, plan[i]);
+                beds.set(plan[i]);
+            }
+            boolean connected = last - first + 1 == group.size() && beds.cardinality() == group.size();
+            for (int b = first + 1; connected && b <= last; b++) {
+                connected = adjacency[b - 1].get(b);
+            }
+            if (!connected) {
+                report.violation("C5", "group of needs " + group + " is not on a connected range of beds");
+            }
+        }
+    }
+
+    /**
+     * Read a plan from the output of {@link AgroEcoPlanProblem#getCsvSolution}: one row per bed, whose cells give
+     * the need cultivated on the bed each week. Needs that do not appear are assigned to bed 0.
+     * @throws IllegalArgumentException if a need appears on several beds
+     */
+    public static int[] parseCsvPlan(List<String[]> rows, int nbNeeds) {
+        int[] plan = new int[nbNeeds];
+        for (int r = 0; r < rows.size(); r++) {
+            String[] row = rows.get(r);
+            int bed = r + 1;
+            for (int w = 1; w < row.length; w++) {
+                if (row[w].isEmpty()) {
+                    continue;
+                }
+                int need = Integer.parseInt(row[w].trim());
+                if (need < 0 || need >= nbNeeds) {
+                    throw new IllegalArgumentException("Unknown need " + need + " on bed " + bed);
+                }
+                if (plan[need] != 0 && plan[need] != bed) {
+                    throw new IllegalArgumentException("Need " + need + " is on beds " + plan[need] + " and " + bed);
+                }
+                plan[need] = bed;
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,283 @@
+package org.agroecoplan;
+
+import org.chocosolver.util.objects.setDataStructures.ISet;
+import org.chocosolver.util.objects.setDataStructures.SetFactory;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Presolve an instance before building any model:
+ * 1. Compute the initial domains from fixed and forbidden beds, and propagate singleton domains over the overlap
+ *    graph (and the rotation graph if return delays are enforced).
+ * 2. Check Hall intervals on the maximal cliques of the overlap graph: the needs of a clique must be assigned to
+ *    pairwise distinct beds, so an interval of beds cannot contain the domains of more needs than it has beds.
+ * 3. Drop the needs that overlap nothing and interact with nothing: any bed of their domain can be given to them
+ *    once the reduced instance is solved. Under C6, no need is dropped if there is a negative precedence, since a
+ *    need separating two crops on a bed may be the one that makes their succession allowed.
+ * The verdict is either INFEASIBLE, REDUCED (the reduced instance has fewer needs, or smaller domains), or
+ * UNCHANGED.
+ */
+public class Presolve {
+
+    public enum Verdict {
+        INFEASIBLE, REDUCED, UNCHANGED
+    }
+
+    private final Data data;
+    private final SolverConfiguration config;
+    private final IntervalGraphs graphs;
+
+    private BitSet[] domains;
+    private Verdict verdict;
+    private String reason;
+    private int[] kept;
+    private int[] dropped;
+    private int nbSingletons;
+    private int[] nbPrunedValues;
+    private int nbKeptPrunedValues;
+    private Data reducedData;
+
+    public Presolve(Data data, SolverConfiguration config) {
+        this(data, new IntervalGraphs(data), config);
+    }
+
+    public Presolve(Data data, IntervalGraphs graphs, SolverConfiguration config) {
+        this.data = data;
+        this.config = config;
+        this.graphs = graphs;
+    }
+
+    public Verdict run() {
+        if (!initDomains() || !propagateSingletons() || !checkHallIntervals()) {
+            verdict = Verdict.INFEASIBLE;
+            return verdict;
+        }
+        // Needs that overlap nothing and interact with nothing
+        boolean[] droppable = new boolean[data.NB_NEEDS];
+        boolean withRotations = config.hasConstraint("C1");
+        boolean withPrecedences = hasPrecedences();
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            droppable[i] = graphs.intervalGraph[i].length == 0
+                    && (!withRotations || graphs.intervalGraphWithRotations[i].length == 0)
+                    && !withPrecedences;
+        }
+        if (withRotations) {
+            // The rotation graph is not necessarily symmetric
+            for (int i = 0; i < data.NB_NEEDS; i++) {
+                for (int j : graphs.intervalGraphWithRotations[i]) {
+                    droppable[j] = false;
+                }
+            }
+        }
+        kept = IntStream.range(0, data.NB_NEEDS).filter(i -> !droppable[i]).toArray();
+        dropped = IntStream.range(0, data.NB_NEEDS).filter(i -> droppable[i]).toArray();
+        nbSingletons = 0;
+        for (int i : kept) {
+            if (data.NEEDS_FIXED_BED[i] < 0 && domains[i].cardinality() == 1) {
+                nbSingletons++;
+            }
+        }
+        buildReducedData();
+        verdict = (dropped.length > 0 || nbSingletons > 0 || nbKeptPrunedValues > 0) ? Verdict.REDUCED : Verdict.UNCHANGED;
+        return verdict;
+    }
+
+    /**
+     * Initial domains, as in the model: a fixed bed, or all the beds but the forbidden ones if they are enforced.
+     */
+    private boolean initDomains() {
+        boolean withForbiddenBeds = config.hasConstraint("C4");
+        domains = new BitSet[data.NB_NEEDS];
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            domains[i] = new BitSet(data.NB_BEDS + 1);
+            if (data.NEEDS_FIXED_BED[i] >= 0) {
+                if (data.NEEDS_FIXED_BED[i] < 1 || data.NEEDS_FIXED_BED[i] > data.NB_BEDS) {
+                    reason = "need " + i + " is fixed to the unknown bed " + data.NEEDS_FIXED_BED[i];
+                    return false;
+                }
+                domains[i].set(data.NEEDS_FIXED_BED[i]);
+            } else {
+                domains[i].set(1, data.NB_BEDS + 1);
+                if (withForbiddenBeds) {
+                    for (int b : data.NEEDS_FORBIDDEN_BEDS[i]) {
+                        if (b >= 1 && b <= data.NB_BEDS) {
+                            domains[i].clear(b);
+                        }
+                    }
+                }
+            }
+            if (domains[i].isEmpty()) {
+                reason = "all beds are forbidden for need " + i;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove the bed of each need with a singleton domain from the domains of its neighbours, until fixpoint.
+     */
+    private boolean propagateSingletons() {
+        int[][] neighbours = config.hasConstraint("C1") ? graphs.intervalGraphWithRotations : graphs.intervalGraph;
+        boolean[] done = new boolean[data.NB_NEEDS];
+        int[] stack = new int[data.NB_NEEDS];
+        int size = 0;
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            if (domains[i].cardinality() == 1) {
+                stack[size++] = i;
+                done[i] = true;
+            }
+        }
+        nbPrunedValues = new int[data.NB_NEEDS];
+        while (size > 0) {
+            int i = stack[--size];
+            int bed = domains[i].nextSetBit(0);
+            for (int j : neighbours[i]) {
+                if (domains[j].get(bed)) {
+                    domains[j].clear(bed);
+                    nbPrunedValues[j]++;
+                    int card = domains[j].cardinality();
+                    if (card == 0) {
+                        reason = "need " + j + " has no bed left once need " + i + " is assigned to bed " + bed;
+                        return false;
+                    }
+                    if (card == 1 && !done[j]) {
+                        done[j] = true;
+                        stack[size++] = j;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check that no interval of beds [l, u] contains the domains of more than u - l + 1 needs of a same clique of
+     * overlapping needs, and that each clique has enough beds in the union of its domains.
+     */
+    private boolean checkHallIntervals() {
+        List<ISet> cliques = ChordalGraphUtils.findMaximalCliques(graphs.intervalGraph);
+        for (ISet clique : cliques) {
+            int[] members = clique.toArray();
+            BitSet union = new BitSet(data.NB_BEDS + 1);
+            for (int i : members) {
+                union.or(domains[i]);
+            }
+            if (union.cardinality() < members.length) {
+                reason = "the " + members.length + " overlapping needs " + Arrays.toString(members)
+                        + " can only use " + union.cardinality() + " beds";
+                return false;
+            }
+            // Sort the members by their maximum bed, then scan them for each possible lower bound
+            Integer[] byMax = Arrays.stream(members).boxed().toArray(Integer[]::new);
+            Arrays.sort(byMax, (a, b) -> domains[a].length() - domains[b].length());
+            for (int i : members) {
+                int l = domains[i].nextSetBit(0);
+                int count = 0;
+                for (int j : byMax) {
+                    if (domains[j].nextSetBit(0) >= l) {
+                        count++;
+                        int u = domains[j].length() - 1;
+                        if (count > u - l + 1) {
+                            reason = count + " overlapping needs must be assigned to the " + (u - l + 1)
+                                    + " beds from " + l + " to " + u;
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the position of the needs on their bed matters for precedences: any precedence if the number
+     * of positive precedences is involved, or any forbidden precedence under C6, since a need may separate two crops
+     * that cannot follow each other, whatever its species.
+     */
+    private boolean hasPrecedences() {
+        if (data.PRECEDENCES == null) {
+            return false;
+        }
+        if (config.usesPrecedenceObjective()) {
+            return true;
+        }
+        if (!config.hasConstraint("C6")) {
+            return false;
+        }
+        for (int[] row : data.PRECEDENCES) {
+            for (int precedence : row) {
+                if (precedence < 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void buildReducedData() {
+        reducedData = data.restrictToNeeds(kept);
+        boolean withForbiddenBeds = config.hasConstraint("C4");
+        // Only the pruned beds that the reduced instance keeps, as fixed or forbidden beds, are counted
+        nbKeptPrunedValues = 0;
+        for (int k = 0; k < kept.length; k++) {
+            BitSet domain = domains[kept[k]];
+            if (domain.cardinality() == 1 || withForbiddenBeds) {
+                nbKeptPrunedValues += nbPrunedValues[kept[k]];
+            }
+            if (domain.cardinality() == 1) {
+                reducedData.NEEDS_FIXED_BED[k] = domain.nextSetBit(0);
+            } else if (withForbiddenBeds) {
+                // Pruned beds become forbidden beds
+                BitSet forbidden = new BitSet(data.NB_BEDS + 1);
+                forbidden.set(1, data.NB_BEDS + 1);
+                forbidden.andNot(domain);
+                reducedData.NEEDS_FORBIDDEN_BEDS[k] = SetFactory.makeConstantSet(forbidden.stream().toArray());
+            }
+        }
+        reducedData.SYMMETRIC_GROUPS = reducedData.findSymmetricGroups();
+    }
+
+    /**
+     * Complete a plan of the reduced instance into a plan of the original instance: dropped needs overlap
+     * nothing and interact with nothing, so they are given the first bed of their domain.
+     * @param reducedPlan bed of each need of the reduced instance
+     * @return bed of each need of the original instance
+     */
+    public int[] restore(int[] reducedPlan) {
+        int[] plan = new int[data.NB_NEEDS];
+        for (int k = 0; k < kept.length; k++) {
+            plan[kept[k]] = reducedPlan[k];
+        }
+        for (int i : dropped) {
+            plan[i] = domains[i].nextSetBit(0);
+        }
+        return plan;
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    /**
+     * @return the reason of infeasibility, if any
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    public Data getReducedData() {
+        return reducedData;
+    }
+
+    public String getSummary() {
+        if (verdict == Verdict.INFEASIBLE) {
+            return "PRESOLVE: INFEASIBLE (" + reason + ")";
+        }
+        return "PRESOLVE: " + verdict + " (" + dropped.length + " needs dropped, " + nbSingletons
+                + " singleton domains, " + nbKeptPrunedValues + " beds pruned, " + kept.length + " needs left)";
+    }
+}
@@ -0,0 +1,217 @@
+package org.agroecoplan;
+
+import org.chocosolver.memory.IStateInt;
+import org.chocosolver.solver.constraints.Propagator;
+import org.chocosolver.solver.constraints.PropagatorPriority;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.events.IntEventType;
+import org.chocosolver.util.ESat;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Forbid negative precedences: on each bed, the crop immediately preceding a crop A (i.e. the crop assigned to the
+ * same bed with the latest beginning before the beginning of A) must not be a forbidden predecessor of A.
+ * The propagator reasons on per-bed timelines: crops are sorted by beginning week, and when a crop is instantiated,
+ * only the crops that begin before (resp. after) it are scanned, until two potential intermediate crops are found.
+ */
+public class PropForbiddenPrecedences extends Propagator<IntVar> {
+
+    private final int n;
+    private final int[] begin;
+    private final int[] species;
+    private final int[][] precedences;
+
+    /**
+     * Crops sorted by ascending beginning week, position of each crop in this order, and bounds of the group of
+     * crops sharing the same beginning week.
+     */
+    private final int[] order;
+    private final int[] position;
+    private final int[] groupStart;
+    private final int[] groupEnd;
+
+    /**
+     * Index of the first crop that might not be instantiated, used to detect complete instantiations.
+     */
+    private final IStateInt firstFree;
+
+    private final int[] lastOnBed;
+    private final int[] stack;
+
+    public PropForbiddenPrecedences(IntVar[] assignment, int[] begin, int[] species, int[][] precedences) {
+        super(assignment, PropagatorPriority.LINEAR, true);
+        this.n = assignment.length;
+        this.begin = begin;
+        this.species = species;
+        this.precedences = precedences;
+        this.order = IntStream.range(0, n).boxed()
+                .sorted((i, j) -> begin[i] - begin[j])
+                .mapToInt(i -> i)
+                .toArray();
+        this.position = new int[n];
+        this.groupStart = new int[n];
+        this.groupEnd = new int[n];
+        for (int p = 0; p < n; p++) {
+            position[order[p]] = p;
+            groupStart[p] = (p > 0 && begin[order[p - 1]] == begin[order[p]]) ? groupStart[p - 1] : p;
+        }
+        for (int p = n - 1; p >= 0; p--) {
+            groupEnd[p] = (p < n - 1 && begin[order[p + 1]] == begin[order[p]]) ? groupEnd[p + 1] : p + 1;
+        }
+        this.firstFree = getModel().getEnvironment().makeInt(0);
+        int maxBed = Arrays.stream(assignment).mapToInt(IntVar::getUB).max().orElse(0);
+        this.lastOnBed = new int[maxBed + 1];
+        this.stack = new int[n];
+    }
+
+    @Override
+    public int getPropagationConditions(int vIdx) {
+        return IntEventType.instantiation();
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        for (int i = 0; i < n; i++) {
+            if (vars[i].isInstantiated()) {
+                filterFrom(i);
+            }
+        }
+        checkIfComplete();
+    }
+
+    @Override
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        filterFrom(idxVarInProp);
+        checkIfComplete();
+    }
+
+    /**
+     * Filter from the instantiation of a crop, and from the instantiations that this filtering causes (events
+     * caused by the propagator itself are not notified back to it).
+     */
+    private void filterFrom(int crop) throws ContradictionException {
+        int size = 0;
+        stack[size++] = crop;
+        while (size > 0) {
+            int x = stack[--size];
+            int bed = vars[x].getValue();
+            size = filterPredecessors(x, bed, size);
+            size = filterSuccessors(x, bed, size);
+        }
+    }
+
+    /**
+     * Crop a is assigned to bed: scan the crops beginning before a, by descending beginning week. A forbidden
+     * predecessor cannot be assigned to the bed if no crop in between can be, and if a single crop in between can,
+     * it must be assigned to the bed when the forbidden predecessor already is.
+     */
+    private int filterPredecessors(int a, int bed, int size) throws ContradictionException {
+        int seen = 0;
+        int candidate = -1;
+        int p = groupStart[position[a]] - 1;
+        while (p >= 0 && seen < 2) {
+            int gs = groupStart[p];
+            for (int q = gs; q <= p; q++) {
+                int b = order[q];
+                if (isForbidden(a, b) && vars[b].contains(bed)) {
+                    size = enforce(b, bed, seen, candidate, size);
+                }
+            }
+            for (int q = gs; q <= p; q++) {
+                if (vars[order[q]].contains(bed)) {
+                    seen++;
+                    candidate = order[q];
+                }
+            }
+            p = gs - 1;
+        }
+        return size;
+    }
+
+    /**
+     * Crop b is assigned to bed: scan the crops beginning after b, by ascending beginning week, symmetrically to
+     * {@link #filterPredecessors(int, int, int)}.
+     */
+    private int filterSuccessors(int b, int bed, int size) throws ContradictionException {
+        int seen = 0;
+        int candidate = -1;
+        int p = groupEnd[position[b]];
+        while (p < n && seen < 2) {
+            int ge = groupEnd[p];
+            for (int q = p; q < ge; q++) {
+                int a = order[q];
+                if (isForbidden(a, b) && vars[a].contains(bed)) {
+                    size = enforce(a, bed, seen, candidate, size);
+                }
+            }
+            for (int q = p; q < ge; q++) {
+                if (vars[order[q]].contains(bed)) {
+                    seen++;
+                    candidate = order[q];
+                }
+            }
+            p = ge;
+        }
+        return size;
+    }
+
+    /**
+     * The crop other would be the direct neighbour (on bed) of an instantiated crop in a forbidden precedence
+     * unless one of the seen crops between them is assigned to bed.
+     */
+    private int enforce(int other, int bed, int seen, int candidate, int size) throws ContradictionException {
+        if (seen == 0) {
+            if (vars[other].removeValue(bed, this) && vars[other].isInstantiated()) {
+                stack[size++] = other;
+            }
+        } else if (seen == 1 && vars[other].isInstantiated()) {
+            if (vars[candidate].instantiateTo(bed, this)) {
+                stack[size++] = candidate;
+            }
+        }
+        return size;
+    }
+
+    private boolean isForbidden(int a, int b) {
+        return precedences[species[a]][species[b]] < 0;
+    }
+
+    private void checkIfComplete() throws ContradictionException {
+        int i = firstFree.get();
+        while (i < n && vars[i].isInstantiated()) {
+            i++;
+        }
+        firstFree.set(i);
+        if (i == n && !isSatisfied()) {
+            fails();
+        }
+    }
+
+    /**
+     * Check, on a complete instantiation, that no crop directly follows a forbidden predecessor on its bed.
+     */
+    private boolean isSatisfied() {
+        Arrays.fill(lastOnBed, -1);
+        for (int p = 0; p < n; p++) {
+            int a = order[p];
+            int bed = vars[a].getValue();
+            int b = lastOnBed[bed];
+            if (b >= 0 && begin[b] < begin[a] && isForbidden(a, b)) {
+                return false;
+            }
+            lastOnBed[bed] = a;
+        }
+        return true;
+    }
+
+    @Override
+    public ESat isEntailed() {
+        if (isCompletelyInstantiated()) {
+            return ESat.eval(isSatisfied());
+        }
+        return ESat.UNDEFINED;
+    }
+}
@@ -0,0 +1,87 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.constraints.Propagator;
+import org.chocosolver.solver.constraints.PropagatorPriority;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.events.IntEventType;
+import org.chocosolver.util.ESat;
+
+import java.util.List;
+
+/**
+ * Enforce a minimum Hamming distance between the assignment and each plan of a list: at least minDistance crops
+ * must be assigned to another bed than in the plan. When only minDistance crops can still differ from a plan, they
+ * must all differ, so the bed of the plan is removed from their domains.
+ * The list of plans may grow during the search (e.g. shared between the workers of a parallel search, which must
+ * then be a thread-safe list): plans added after a node was propagated are taken into account from the next
+ * propagation on, and solutions must be checked against them.
+ */
+public class PropHammingDistance extends Propagator<IntVar> {
+
+    private final int n;
+    private final List<int[]> plans;
+    private final int minDistance;
+
+    /**
+     * @param assignment  assignment variables
+     * @param plans       plans to differ from, each giving the bed of every crop
+     * @param minDistance minimum number of crops assigned to another bed than in each plan
+     */
+    public PropHammingDistance(IntVar[] assignment, List<int[]> plans, int minDistance) {
+        super(assignment, PropagatorPriority.LINEAR, false);
+        this.n = assignment.length;
+        this.plans = plans;
+        this.minDistance = minDistance;
+    }
+
+    @Override
+    public int getPropagationConditions(int vIdx) {
+        return IntEventType.all();
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        for (int[] plan : plans) {
+            // Crops that can still be assigned to another bed than in the plan
+            int canDiffer = 0;
+            for (int i = 0; i < n; i++) {
+                if (!vars[i].isInstantiatedTo(plan[i])) {
+                    canDiffer++;
+                }
+            }
+            if (canDiffer < minDistance) {
+                fails();
+            }
+            if (canDiffer == minDistance) {
+                for (int i = 0; i < n; i++) {
+                    if (!vars[i].isInstantiatedTo(plan[i])) {
+                        vars[i].removeValue(plan[i], this);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public ESat isEntailed() {
+        boolean entailed = true;
+        for (int[] plan : plans) {
+            int canDiffer = 0;
+            int differ = 0;
+            for (int i = 0; i < n; i++) {
+                if (!vars[i].isInstantiatedTo(plan[i])) {
+                    canDiffer++;
+                    if (!vars[i].contains(plan[i])) {
+                        differ++;
+                    }
+                }
+            }
+            if (canDiffer < minDistance) {
+                return ESat.FALSE;
+            }
+            entailed &= differ >= minDistance;
+        }
+        return entailed ? ESat.TRUE : ESat.UNDEFINED;
+    }
+}
@@ -0,0 +1,89 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.constraints.Propagator;
+import org.chocosolver.solver.constraints.PropagatorPriority;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.events.IntEventType;
+import org.chocosolver.util.ESat;
+
+/**
+ * Enforce return delays on beds, i.e. the edges of the rotation graph that are not overlaps of cultivation periods.
+ * Since delays are given between species, these conflicts are precomputed as conflict lists. The filtering is forward
+ * checking, the same as the decomposition into binary differences
+ * ({@link AgroEcoPlanProblem#postRotationConstraintsDecomposed()}): when a crop is assigned to a bed, the bed is
+ * removed from the domains of its conflicting crops. A single propagator replaces the binary constraints, so that the
+ * model and the propagation queue do not grow with the number of conflicts.
+ */
+public class PropRotationDelays extends Propagator<IntVar> {
+
+    private final int n;
+    private final int[][] conflicts;
+    private final int[] stack;
+
+    /**
+     * @param assignment assignment variables
+     * @param conflicts  symmetric conflict lists, conflicts[i] are the crops that cannot share the bed of crop i
+     */
+    public PropRotationDelays(IntVar[] assignment, int[][] conflicts) {
+        super(assignment, PropagatorPriority.LINEAR, true);
+        this.n = assignment.length;
+        this.conflicts = conflicts;
+        this.stack = new int[n];
+    }
+
+    @Override
+    public int getPropagationConditions(int vIdx) {
+        return IntEventType.instantiation();
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        for (int i = 0; i < n; i++) {
+            if (vars[i].isInstantiated()) {
+                filterFrom(i);
+            }
+        }
+    }
+
+    @Override
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        filterFrom(idxVarInProp);
+    }
+
+    /**
+     * Release the bed of an instantiated crop for its conflicting crops. Instantiations caused by this filtering
+     * are not notified back to the propagator, so they are processed here as well.
+     */
+    private void filterFrom(int crop) throws ContradictionException {
+        int size = 0;
+        stack[size++] = crop;
+        while (size > 0) {
+            int i = stack[--size];
+            int bed = vars[i].getValue();
+            for (int j : conflicts[i]) {
+                if (vars[j].removeValue(bed, this) && vars[j].isInstantiated()) {
+                    stack[size++] = j;
+                }
+            }
+        }
+    }
+
+    @Override
+    public ESat isEntailed() {
+        boolean complete = true;
+        for (int i = 0; i < n; i++) {
+            if (vars[i].isInstantiated()) {
+                int bed = vars[i].getValue();
+                for (int j : conflicts[i]) {
+                    if (vars[j].isInstantiated() && vars[j].getValue() == bed) {
+                        return ESat.FALSE;
+                    }
+                }
+            } else {
+                complete = false;
+            }
+        }
+        return complete ? ESat.TRUE : ESat.UNDEFINED;
+    }
+}
@@ -0,0 +1,195 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.ICause;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.constraints.Propagator;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.propagation.PropagationObserver;
+import org.chocosolver.solver.search.loop.monitors.IMonitorContradiction;
+import org.chocosolver.solver.search.loop.monitors.IMonitorDownBranch;
+import org.chocosolver.solver.variables.Variable;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opt-in profile of the propagation, by constraint label (see {@link AgroEcoPlanProblem#getConstraintLabels}): number
+ * of propagator calls, time spent, filtering events (domain modifications) and failures caused. Each model is
+ * observed by its own recorder, so that portfolio workers do not contend, and the profile sums the recorders.
+ * The propagation engine only reports the beginning of propagator calls: a call is deemed to last until the next
+ * call, failure, or end of the propagation of a search decision, which includes a small part of the engine overhead.
+ * Observing the propagation slows the search down, so profiles are only comparable with each other.
+ */
+public class PropagationProfile {
+
+    private static final String[] COLUMNS = {"calls", "time_ms", "filterings", "failures"};
+
+    private final List<Recorder> recorders = new ArrayList<>();
+
+    /**
+     * Observe the propagation of a problem, whose constraints must all be posted.
+     */
+    public void attach(AgroEcoPlanProblem problem) {
+        Recorder recorder = new Recorder(problem.getConstraintLabels());
+        problem.getModel().getSolver().getEngine().setObserver(recorder);
+        problem.getModel().getSolver().plugMonitor(recorder);
+        synchronized (recorders) {
+            recorders.add(recorder);
+        }
+    }
+
+    /**
+     * Statistics of one model, indexed by label; propagators posted after the model was attached (e.g. objective
+     * cuts) are counted as "other".
+     */
+    private static class Recorder implements PropagationObserver, IMonitorDownBranch, IMonitorContradiction {
+
+        private final Map<Propagator<?>, Integer> labelOf = new IdentityHashMap<>();
+        private final List<String> labels = new ArrayList<>();
+        private final int other;
+        private final long[][] stats;
+
+        private int current = -1;
+        private long since;
+
+        Recorder(Map<Constraint, String> constraintLabels) {
+            Map<String, Integer> index = new LinkedHashMap<>();
+            for (Map.Entry<Constraint, String> e : constraintLabels.entrySet()) {
+                int label = index.computeIfAbsent(e.getValue(), l -> index.size());
+                for (Propagator<?> p : e.getKey().getPropagators()) {
+                    labelOf.put(p, label);
+                }
+            }
+            other = index.computeIfAbsent("other", l -> index.size());
+            labels.addAll(index.keySet());
+            stats = new long[labels.size()][COLUMNS.length];
+        }
+
+        private int label(ICause cause) {
+            Integer label = cause instanceof Propagator ? labelOf.get(cause) : null;
+            return label == null ? other : label;
+        }
+
+        private void start(Propagator<?> propagator) {
+            long now = System.nanoTime();
+            stop(now);
+            current = label(propagator);
+            since = now;
+            stats[current][0]++;
+        }
+
+        private void stop(long now) {
+            if (current >= 0) {
+                stats[current][1] += now - since;
+                current = -1;
+            }
+        }
+
+        @Override
+        public void onCoarseEvent(Propagator<?> propagator) {
+            start(propagator);
+        }
+
+        @Override
+        public void onFineEvent(Propagator<?> propagator) {
+            start(propagator);
+        }
+
+        @Override
+        public void onFiltering(ICause cause, Variable variable) {
+            if (cause instanceof Propagator) {
+                stats[label(cause)][2]++;
+            }
+        }
+
+        @Override
+        public void onFailure(ICause cause, Propagator<?> propagator) {
+            stats[label(propagator != null ? propagator : cause)][3]++;
+            stop(System.nanoTime());
+        }
+
+        @Override
+        public void afterDownBranch(boolean left) {
+            stop(System.nanoTime());
+        }
+
+        @Override
+        public void onContradiction(ContradictionException cex) {
+            stop(System.nanoTime());
+        }
+    }
+
+    /**
+     * @return for each label, the number of calls, the time spent (ms), the filtering events and the failures, summed
+     * over all the observed models; to be read once the searches are over
+     */
+    public Map<String, long[]> getTotals() {
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        synchronized (recorders) {
+            for (Recorder r : recorders) {
+                for (int l = 0; l < r.labels.size(); l++) {
+                    long[] total = totals.computeIfAbsent(r.labels.get(l), k -> new long[COLUMNS.length]);
+                    for (int c = 0; c < COLUMNS.length; c++) {
+                        total[c] += r.stats[l][c];
+                    }
+                }
+            }
+        }
+        // Nanoseconds to milliseconds
+        totals.values().forEach(total -> total[1] /= 1_000_000);
+        return totals;
+    }
+
+    /**
+     * @return a table of the totals, with a header line: label, calls, time_ms, filterings, failures
+     */
+    public String[][] toTable() {
+        Map<String, long[]> totals = getTotals();
+        String[][] table = new String[totals.size() + 1][];
+        table[0] = new String[]{"label", COLUMNS[0], COLUMNS[1], COLUMNS[2], COLUMNS[3]};
+        int k = 1;
+        for (Map.Entry<String, long[]> e : totals.entrySet()) {
+            long[] t = e.getValue();
+            table[k++] = new String[]{e.getKey(), String.valueOf(t[0]), String.valueOf(t[1]), String.valueOf(t[2]),
+                    String.valueOf(t[3])};
+        }
+        return table;
+    }
+
+    /**
+     * Print the totals, one line per label.
+     */
+    public void print() {
+        for (String[] row : toTable()) {
+            System.out.println(String.format("%-10s %12s %10s %12s %10s", (Object[]) row));
+        }
+    }
+
+    /**
+     * Write the totals as JSON: {"workers": 4, "labels": {"C1": {"calls": 120, "time_ms": 8, ...}, ...}}
+     */
+    public void writeJson(String path) {
+        Map<String, long[]> totals = getTotals();
+        try (Writer writer = new FileWriter(path)) {
+            writer.write("{\"workers\": " + recorders.size() + ", \"labels\": {");
+            int k = 0;
+            for (Map.Entry<String, long[]> e : totals.entrySet()) {
+                writer.write(k++ > 0 ? ",\n  " : "\n  ");
+                writer.write("\"" + e.getKey() + "\": {");
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    writer.write((c > 0 ? ", " : "") + "\"" + COLUMNS[c] + "\": " + e.getValue()[c]);
+                }
+                writer.write("}");
+            }
+            writer.write("\n}}\n");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.agroecoplan;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * On-disk cache of solved plans, one properties file per request. A request is identified by a hash of the parsed
+ * instance (so that files differing only by formatting or comments share their entries), of the constraints,
+ * objective, and minimum values of the objectives, and of the solving mode (e.g. presolve, or a decomposition whose
+ * plans are not those of a complete search). A stored result is reused if it was obtained with the same time
+ * limit, or if it is proven (optimal, or infeasible), whatever the time limit.
+ */
+public class ResultCache {
+
+    private static final String PLAN = "plan";
+    private static final String OBJECTIVE = "objective";
+    private static final String PROVEN = "proven";
+    private static final String TIMEOUT = "timeout";
+
+    private final File directory;
+
+    public ResultCache(String directory) {
+        this.directory = new File(directory);
+        this.directory.mkdirs();
+    }
+
+    /**
+     * @return the stored result of the request, or null if there is none usable with this time limit
+     */
+    public SolverConfiguration.Result lookup(String key, String timeout) {
+        File file = new File(directory, key + ".properties");
+        if (!file.exists()) {
+            return null;
+        }
+        Properties entry = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            entry.load(in);
+        } catch (IOException e) {
+            // An unreadable entry is just a miss
+            return null;
+        }
+        boolean proven = Boolean.parseBoolean(entry.getProperty(PROVEN));
+        if (!proven && !String.valueOf(timeout).equals(entry.getProperty(TIMEOUT))) {
+            return null;
+        }
+        String plan = entry.getProperty(PLAN, "");
+        String objective = entry.getProperty(OBJECTIVE, "");
+        return new SolverConfiguration.Result(null, null,
+                plan.isEmpty() ? null : Arrays.stream(plan.split(",")).mapToInt(Integer::parseInt).toArray(),
+                objective.isEmpty() ? null : Integer.valueOf(objective), proven);
+    }
+
+    /**
+     * Store the result of a request, unless a proven result is already stored.
+     */
+    public synchronized void store(String key, String timeout, SolverConfiguration.Result result) {
+        File file = new File(directory, key + ".properties");
+        SolverConfiguration.Result previous = lookup(key, null);
+        if (previous != null && previous.isProven()) {
+            return;
+        }
+        Properties entry = new Properties();
+        entry.setProperty(PLAN, result.getPlan() == null ? "" : Arrays.stream(result.getPlan())
+                .mapToObj(String::valueOf).collect(Collectors.joining(",")));
+        entry.setProperty(OBJECTIVE, result.getObjectiveValue() == null ? "" : String.valueOf(result.getObjectiveValue()));
+        entry.setProperty(PROVEN, String.valueOf(result.isProven()));
+        entry.setProperty(TIMEOUT, String.valueOf(timeout));
+        try {
+            // Write then rename, so that concurrent readers never see a partial entry
+            File tmp = File.createTempFile(key, ".tmp", directory);
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                entry.store(out, null);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the key of the request of solving data with the given configuration by a complete search (the time
+     * limit is not part of it)
+     */
+    public static String key(Data data, SolverConfiguration config) {
+        return key(data, config, "");
+    }
+
+    /**
+     * @param mode description of the solving mode and of its settings, empty for a complete search
+     * @return the key of the request of solving data with the given configuration and mode (the time limit is not
+     * part of it)
+     */
+    public static String key(Data data, SolverConfiguration config, String mode) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        StringBuilder content = new StringBuilder();
+        content.append(String.join(",", data.SPECIES)).append('\n');
+        append(content, data.INTERACTIONS);
+        append(content, data.PRECEDENCES);
+        append(content, data.DELAYS);
+        content.append(data.NB_NEEDS).append('\n');
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            int[] forbidden = data.NEEDS_FORBIDDEN_BEDS[i].toArray();
+            Arrays.sort(forbidden);
+            content.append(data.NEEDS_SPECIES[i]).append(';').append(data.NEEDS_BEGIN[i]).append(';')
+                    .append(data.NEEDS_END[i]).append(';').append(data.NEEDS_FAMILY[i]).append(';')
+                    .append(data.NEEDS_RETURN_DELAY[i]).append(';').append(data.NEEDS_FIXED_BED[i]).append(';')
+                    .append(Arrays.toString(forbidden)).append('\n');
+        }
+        content.append(data.NB_BEDS).append('\n');
+        for (int b = 1; b <= data.NB_BEDS; b++) {
+            int[] adjacent = data.ADJACENCY[b].toArray();
+            Arrays.sort(adjacent);
+            content.append(data.BEDS_GARDEN[b]).append(';').append(Arrays.toString(adjacent)).append('\n');
+        }
+        // The order of the constraints does not matter
+        TreeSet<String> constraints = new TreeSet<>();
+        for (String c : config.getConstraints()) {
+            if (!c.trim().isEmpty()) {
+                constraints.add(c.trim());
+            }
+        }
+        content.append(String.join(",", constraints)).append('\n')
+                .append(config.getObjective()).append(';').append(config.getMinO1()).append(';')
+                .append(config.getMinO2()).append('\n')
+                .append(mode).append('\n');
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(content.toString().getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void append(StringBuilder content, int[][] matrix) {
+        if (matrix == null) {
+            content.append("-\n");
+            return;
+        }
+        for (int[] row : matrix) {
+            content.append(Arrays.toString(row)).append('\n');
+        }
+    }
+}
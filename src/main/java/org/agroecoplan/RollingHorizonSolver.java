@@ -0,0 +1,196 @@
+package org.agroecoplan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+/**
+ * Rolling-horizon resolution of multi-year calendars. The calendar is split into time windows of windowLength
+ * weeks, consecutive windows overlapping by overlap weeks. Window k commits the needs beginning in its first
+ * windowLength - overlap weeks, and also solves the needs beginning in the overlap (look-ahead), which are committed
+ * by the next window. The needs committed by earlier windows that constrain a window (overlapping needs, rotation
+ * delays, and the previous crop of each bed when precedences are involved) are included with their bed fixed.
+ * A window only waits for the earlier windows it interacts with, so that independent windows are solved in
+ * parallel. Lower bounds on the objectives hold for the whole calendar: windows are solved without them, and they
+ * are checked on the assembled plan.
+ */
+public class RollingHorizonSolver {
+
+    private final SolverConfiguration config;
+    private final SolverConfiguration windowConfig;
+    private final int windowLength;
+    private final int overlap;
+    private final int nbWorkers;
+
+    /**
+     * @param config       settings used to solve each window, and lower bounds on the objectives of the plan
+     * @param windowLength length of a window, in weeks
+     * @param overlap      number of weeks shared by two consecutive windows, lower than windowLength
+     * @param nbWorkers    maximum number of windows solved simultaneously
+     */
+    public RollingHorizonSolver(SolverConfiguration config, int windowLength, int overlap, int nbWorkers) {
+        if (overlap < 0 || overlap >= windowLength) {
+            throw new IllegalArgumentException("The overlap of windows must be in [0, " + windowLength + "[");
+        }
+        this.config = config;
+        this.windowConfig = config.withoutObjectiveBounds();
+        this.windowLength = windowLength;
+        this.overlap = overlap;
+        this.nbWorkers = Math.max(1, nbWorkers);
+    }
+
+    public SolverConfiguration.Result solve(Data data) {
+        IntervalGraphs graphs = new IntervalGraphs(data);
+        int[][] neighbours = config.hasConstraint("C1") ? graphs.intervalGraphWithRotations : graphs.intervalGraph;
+        boolean withPrecedences = data.PRECEDENCES != null
+                && (config.hasConstraint("C6") || config.usesPrecedenceObjective());
+
+        // 1. Split the calendar
+        int step = windowLength - overlap;
+        int first = Arrays.stream(data.NEEDS_BEGIN).min().orElse(0);
+        int last = Arrays.stream(data.NEEDS_BEGIN).max().orElse(0);
+        int nbWindows = Math.max(1, (last - first) / step + 1);
+        int[] windowOf = new int[data.NB_NEEDS];
+        for (int i = 0; i < data.NB_NEEDS; i++) {
+            windowOf[i] = (data.NEEDS_BEGIN[i] - first) / step;
+        }
+        List<int[]> committed = new ArrayList<>();
+        List<int[]> lookAhead = new ArrayList<>();
+        for (int k = 0; k < nbWindows; k++) {
+            int finalK = k;
+            committed.add(IntStream.range(0, data.NB_NEEDS).filter(i -> windowOf[i] == finalK).toArray());
+            int end = first + k * step + windowLength;
+            lookAhead.add(IntStream.range(0, data.NB_NEEDS)
+                    .filter(i -> windowOf[i] > finalK && data.NEEDS_BEGIN[i] < end)
+                    .toArray());
+        }
+
+        // 2. Dependencies between windows
+        List<BitSet> dependencies = new ArrayList<>();
+        for (int k = 0; k < nbWindows; k++) {
+            BitSet deps = new BitSet(nbWindows);
+            if (withPrecedences) {
+                deps.set(0, k);
+            } else {
+                for (int i : committed.get(k)) {
+                    for (int j : neighbours[i]) {
+                        if (windowOf[j] < k) {
+                            deps.set(windowOf[j]);
+                        }
+                    }
+                }
+                // Needs committed before that constrain the look-ahead needs
+                for (int i : lookAhead.get(k)) {
+                    for (int j : neighbours[i]) {
+                        if (windowOf[j] < k) {
+                            deps.set(windowOf[j]);
+                        }
+                    }
+                }
+            }
+            dependencies.add(deps);
+        }
+
+        // 3. Solve windows as soon as the windows they depend on are committed
+        int[] plan = new int[data.NB_NEEDS];
+        Arrays.fill(plan, -1);
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int k = 0; k < nbWindows; k++) {
+                int finalK = k;
+                CompletableFuture<?>[] deps = dependencies.get(k).stream()
+                        .mapToObj(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.add(CompletableFuture.allOf(deps).thenRunAsync(() -> solveWindow(data, finalK,
+                        committed.get(finalK), lookAhead.get(finalK), dependencies.get(finalK), windowOf,
+                        neighbours, withPrecedences, plan), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof WindowInfeasibleException) {
+                if (config.isVerbose()) {
+                    System.out.println("+++" + e.getCause().getMessage());
+                }
+                return new SolverConfiguration.Result(null, null, null, null);
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        return config.evaluate(data, plan);
+    }
+
+    private void solveWindow(Data data, int k, int[] committed, int[] lookAhead, BitSet dependencies,
+                             int[] windowOf, int[][] neighbours, boolean withPrecedences, int[] plan) {
+        if (committed.length == 0) {
+            return;
+        }
+        // Boundary conditions: needs committed by the windows this one depends on
+        BitSet boundary = new BitSet(data.NB_NEEDS);
+        synchronized (plan) {
+            for (int[] needs : new int[][]{committed, lookAhead}) {
+                for (int i : needs) {
+                    for (int j : neighbours[i]) {
+                        if (windowOf[j] < k && dependencies.get(windowOf[j])) {
+                            boundary.set(j);
+                        }
+                    }
+                }
+            }
+            if (withPrecedences) {
+                // Last committed crop on each bed
+                int[] lastOnBed = new int[data.NB_BEDS + 1];
+                Arrays.fill(lastOnBed, -1);
+                for (int j = 0; j < data.NB_NEEDS; j++) {
+                    if (windowOf[j] < k && plan[j] > 0) {
+                        int l = lastOnBed[plan[j]];
+                        if (l < 0 || data.NEEDS_BEGIN[l] < data.NEEDS_BEGIN[j]) {
+                            lastOnBed[plan[j]] = j;
+                        }
+                    }
+                }
+                for (int l : lastOnBed) {
+                    if (l >= 0) {
+                        boundary.set(l);
+                    }
+                }
+            }
+        }
+        int[] fixed = boundary.stream().toArray();
+        int[] needs = IntStream.concat(IntStream.concat(Arrays.stream(fixed), Arrays.stream(committed)),
+                Arrays.stream(lookAhead)).toArray();
+        Data windowData = data.restrictToNeeds(needs);
+        synchronized (plan) {
+            for (int f = 0; f < fixed.length; f++) {
+                windowData.NEEDS_FIXED_BED[f] = plan[fixed[f]];
+            }
+        }
+        windowData.SYMMETRIC_GROUPS = windowData.findSymmetricGroups();
+        if (config.isVerbose()) {
+            System.out.println("+++WINDOW " + k + ": " + committed.length + " needs committed, " + lookAhead.length
+                    + " needs ahead, " + fixed.length + " boundary needs");
+        }
+        SolverConfiguration.Result result = windowConfig.solve(windowData);
+        if (result.getPlan() == null) {
+            throw new WindowInfeasibleException("No solution found for window " + k);
+        }
+        synchronized (plan) {
+            for (int c = 0; c < committed.length; c++) {
+                plan[committed[c]] = result.getPlan()[fixed.length + c];
+            }
+        }
+    }
+
+    private static class WindowInfeasibleException extends RuntimeException {
+        WindowInfeasibleException(String message) {
+            super(message);
+        }
+    }
+}
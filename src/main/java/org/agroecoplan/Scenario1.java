@@ -1,7 +1,5 @@
 package org.agroecoplan;
 
-import com.opencsv.CSVWriter;
-import com.opencsv.CSVWriterBuilder;
 import com.opencsv.exceptions.CsvException;
 import org.chocosolver.solver.Model;
 import org.chocosolver.solver.Solution;
@@ -11,10 +9,8 @@ import org.chocosolver.solver.variables.IntVar;
 import org.chocosolver.util.objects.setDataStructures.ISet;
 import org.chocosolver.util.objects.setDataStructures.SetFactory;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.stream.IntStream;
 
 public class Scenario1 {
 
@@ -91,33 +87,7 @@ public class Scenario1 {
             int nBeds = beds.size();
             System.out.println("Nb beds = " + nBeds);
 
-            int maxWeek = Arrays.stream(data.NEEDS_END).max().getAsInt();
-
-            String[][] solution = new String[nbMaxBeds][];
-            for (int i = 1; i < nbMaxBeds + 1; i++) {
-                int finalI = i;
-                int[] needs = IntStream.range(0, assignments.length)
-                        .filter(v -> sol.getIntVal(assignments[v]) == finalI)
-                        .toArray();
-                String[] row = new String[maxWeek + 1];
-                row[0] = "Planche " + i;
-                for (int j = 1; j < maxWeek + 1; j++) {
-                    row[j] = "";
-                }
-                for (int n : needs) {
-                    for (int w = data.NEEDS_BEGIN[n]; w <= data.NEEDS_END[n]; w++) {
-                        row[w] = "" + n;
-                    }
-                }
-                solution[i - 1] = row;
-            }
-
-            CSVWriter writer = (CSVWriter) new CSVWriterBuilder(new FileWriter(output)).withSeparator(';').build();
-
-            for (String[] row : solution) {
-                writer.writeNext(row, false);
-            }
-            writer.close();
+            new PlanExporter(data, nbMaxBeds, problem.getPlan(sol)).write(output);
             System.out.println("Solution exported at: " + output);
         }
     }
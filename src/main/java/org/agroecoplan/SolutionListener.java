@@ -0,0 +1,16 @@
+package org.agroecoplan;
+
+/**
+ * Receives each improving plan as soon as it is found, e.g. to show progressively better plans during a long
+ * optimization. Listeners are called from the solver threads, one plan at a time.
+ */
+@FunctionalInterface
+public interface SolutionListener {
+
+    /**
+     * @param plan      the bed of each need; the array is not used by the solver afterwards
+     * @param objective the objective value of the plan, null for satisfaction
+     * @param timeMs    time elapsed since the beginning of the resolution, in milliseconds
+     */
+    void onSolution(int[] plan, Integer objective, long timeMs);
+}
@@ -0,0 +1,56 @@
+package org.agroecoplan;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only log of the plans found by a resolution, one line per plan, written as soon as the plan is found:
+ * <pre>
+ * timestamp;time_ms;objective;plan
+ * 2026-03-02T10:15:30.120Z;5210;42;3 0 7 12 ...
+ * </pre>
+ * The objective is empty for satisfaction. The header is only written to a new or empty file, so that the log of
+ * several runs can be appended to the same file. Each line is flushed, so a reader (or a crash) never sees more than
+ * a partial last line.
+ */
+public class SolutionLog implements SolutionListener, AutoCloseable {
+
+    private final BufferedWriter writer;
+
+    public SolutionLog(String path) throws IOException {
+        File file = new File(path);
+        boolean header = !file.exists() || file.length() == 0;
+        this.writer = new BufferedWriter(new FileWriter(file, true));
+        if (header) {
+            writer.write("timestamp;time_ms;objective;plan");
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    @Override
+    public synchronized void onSolution(int[] plan, Integer objective, long timeMs) {
+        try {
+            writer.write(Instant.now() + ";" + timeMs + ";" + (objective == null ? "" : objective) + ";"
+                    + Arrays.stream(plan).mapToObj(String::valueOf).collect(Collectors.joining(" ")));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.variables.IntVar;
+
+/**
+ * Compact record of the solutions found by a search: only the assignment variables and the objective are recorded,
+ * in an int array per solution, instead of all the variables of the model (as a {@link org.chocosolver.solver.Solution}
+ * does, including the many boolean variables of the objectives). The sink keeps either the best solution, or the
+ * last N solutions in a ring buffer. Arrays are allocated once and reused, so recording does not allocate memory.
+ */
+public class SolutionSink {
+
+    private final boolean keepBest;
+    private final int[][] records;
+    private int size = 0;
+    // Index of the most recent record
+    private int last = -1;
+    private long count = 0;
+    private boolean hasObjective;
+
+    private SolutionSink(boolean keepBest, int capacity) {
+        this.keepBest = keepBest;
+        this.records = new int[capacity][];
+    }
+
+    /**
+     * @return a sink keeping the solution with the best objective value (the most recent one for satisfaction)
+     */
+    public static SolutionSink best() {
+        return new SolutionSink(true, 1);
+    }
+
+    /**
+     * @return a sink keeping the last n solutions
+     */
+    public static SolutionSink last(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("The sink must keep at least one solution");
+        }
+        return new SolutionSink(false, n);
+    }
+
+    /**
+     * Record the current solution of a problem, while its variables are instantiated (e.g. from a solution
+     * monitor, or after a successful call to solve).
+     */
+    public synchronized void record(AgroEcoPlanProblem problem) {
+        IntVar[] assignment = problem.getAssignment();
+        IntVar gain = problem.getGain();
+        count++;
+        hasObjective = gain != null;
+        if (keepBest && size > 0 && hasObjective && gain.getValue() < records[0][assignment.length]) {
+            return;
+        }
+        int next = keepBest ? 0 : (last + 1) % records.length;
+        int length = assignment.length + (hasObjective ? 1 : 0);
+        if (records[next] == null || records[next].length != length) {
+            records[next] = new int[length];
+        }
+        int[] record = records[next];
+        for (int i = 0; i < assignment.length; i++) {
+            record[i] = assignment[i].getValue();
+        }
+        if (hasObjective) {
+            record[assignment.length] = gain.getValue();
+        }
+        last = next;
+        size = Math.min(size + 1, records.length);
+    }
+
+    /**
+     * @return the number of solutions kept
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of solutions recorded since the sink was created, kept or not
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @param k 0 for the best (or most recent) solution, 1 for the one before, etc.
+     * @return a copy of the bed of each need in the k-th solution
+     */
+    public synchronized int[] getPlan(int k) {
+        int[] record = get(k);
+        int[] plan = new int[hasObjective ? record.length - 1 : record.length];
+        System.arraycopy(record, 0, plan, 0, plan.length);
+        return plan;
+    }
+
+    /**
+     * @param k 0 for the best (or most recent) solution, 1 for the one before, etc.
+     * @return the objective value of the k-th solution, null for satisfaction
+     */
+    public synchronized Integer getObjective(int k) {
+        int[] record = get(k);
+        return hasObjective ? record[record.length - 1] : null;
+    }
+
+    private int[] get(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("No solution " + k + " in a sink of " + size + " solutions");
+        }
+        return records[Math.floorMod(last - k, records.length)];
+    }
+}
@@ -0,0 +1,560 @@
+package org.agroecoplan;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solution;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.search.SearchState;
+import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.util.tools.ArrayUtils;
+import org.chocosolver.util.tools.TimeUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Settings of a resolution (constraints, optimization objective, minimum objective values, time limit and
+ * parallelism), used to build the models of an instance in a consistent way and to solve them.
+ */
+public class SolverConfiguration {
+
+    private final String[] constraints;
+    private final String objective;
+    private final String timeout;
+    private int minO1 = 0;
+    private int minO2 = 0;
+    private boolean parallel = false;
+    private int nbCores = 1;
+    private boolean verbose = false;
+    private String checkpointPath = null;
+    private long checkpointPeriodMs = 0;
+    private Checkpoint resumeFrom = null;
+    private final List<SolutionListener> solutionListeners = new CopyOnWriteArrayList<>();
+    private PropagationProfile profile = null;
+
+    /**
+     * @param constraints constraints to enforce (C1 to C6)
+     * @param objective   optimization objective (SAT, O1 or O2), or two objectives optimized in lexicographic order
+     *                    (O1,O2 or O2,O1)
+     * @param timeout     time limit of the search (e.g. 1m), null for no time limit
+     */
+    public SolverConfiguration(String[] constraints, String objective, String timeout) {
+        this.constraints = constraints;
+        if (!Arrays.asList("SAT", "O1", "O2", "O1,O2", "O2,O1").contains(objective)) {
+            System.out.println("Warning: incorrect optimization objective key, SAT will be used.");
+            objective = "SAT";
+        }
+        this.objective = objective;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return a copy of this configuration enforcing other constraints
+     */
+    public SolverConfiguration withConstraints(String[] constraints) {
+        return copy(constraints, objective);
+    }
+
+    /**
+     * @return a copy of this configuration with another optimization objective
+     */
+    public SolverConfiguration withObjective(String objective) {
+        return copy(constraints, objective);
+    }
+
+    /**
+     * @return a copy of this configuration without lower bounds on the objectives, to solve the subproblems of a
+     * decomposition (time windows, gardens): the bounds hold for the whole instance, and are checked on the plan
+     * assembled from the subproblems (see {@link #evaluate})
+     */
+    public SolverConfiguration withoutObjectiveBounds() {
+        SolverConfiguration copy = copy(constraints, objective);
+        copy.minO1 = 0;
+        copy.minO2 = 0;
+        return copy;
+    }
+
+    /**
+     * @return a copy of this configuration with another time limit
+     */
+    public SolverConfiguration withTimeout(String timeout) {
+        return copy(constraints, objective, timeout);
+    }
+
+    private SolverConfiguration copy(String[] constraints, String objective) {
+        return copy(constraints, objective, timeout);
+    }
+
+    private SolverConfiguration copy(String[] constraints, String objective, String timeout) {
+        SolverConfiguration copy = new SolverConfiguration(constraints, objective, timeout);
+        copy.minO1 = minO1;
+        copy.minO2 = minO2;
+        copy.parallel = parallel;
+        copy.nbCores = nbCores;
+        copy.verbose = verbose;
+        copy.checkpointPath = checkpointPath;
+        copy.checkpointPeriodMs = checkpointPeriodMs;
+        copy.resumeFrom = resumeFrom;
+        copy.profile = profile;
+        return copy;
+    }
+
+    public void setMinO1(int minO1) {
+        this.minO1 = minO1;
+    }
+
+    public void setMinO2(int minO2) {
+        this.minO2 = minO2;
+    }
+
+    /**
+     * Solve with a parallel portfolio of nbCores models.
+     */
+    public void setParallel(int nbCores) {
+        this.parallel = true;
+        this.nbCores = nbCores;
+    }
+
+    /**
+     * Save a checkpoint of the search to the given file, at the given period (e.g. 5m), and at the end.
+     */
+    public void setCheckpoint(String path, String period) {
+        this.checkpointPath = path;
+        this.checkpointPeriodMs = TimeUtils.convertInMilliseconds(period);
+    }
+
+    /**
+     * Resume the search from a checkpoint: its plan is used as incumbent, and only better plans are searched. The
+     * checkpoint is ignored if it was saved for another instance or configuration.
+     */
+    public void resumeFrom(Checkpoint checkpoint) {
+        this.resumeFrom = checkpoint;
+    }
+
+    /**
+     * Stream each improving plan found by {@link #solve} to the listener, as soon as it is found. Listeners are not
+     * copied by {@link #withConstraints} and {@link #withObjective}.
+     */
+    public void addSolutionListener(SolutionListener listener) {
+        solutionListeners.add(listener);
+    }
+
+    public void removeSolutionListener(SolutionListener listener) {
+        solutionListeners.remove(listener);
+    }
+
+    /**
+     * Profile the propagation of the models solved by {@link #solve}, in the given profile.
+     */
+    public void setProfile(PropagationProfile profile) {
+        this.profile = profile;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public String[] getConstraints() {
+        return constraints;
+    }
+
+    public boolean hasConstraint(String constraint) {
+        return ArrayUtils.contains(constraints, constraint);
+    }
+
+    public String getObjective() {
+        return objective;
+    }
+
+    public int getMinO1() {
+        return minO1;
+    }
+
+    public int getMinO2() {
+        return minO2;
+    }
+
+    public String getTimeout() {
+        return timeout;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public int getNbCores() {
+        return nbCores;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    /**
+     * @return true if the number of positive precedences is involved, either as objective or as a lower bound.
+     */
+    public boolean usesPrecedenceObjective() {
+        return objective.contains("O2") || minO2 > 0;
+    }
+
+    /**
+     * @return true if two objectives are optimized in lexicographic order
+     */
+    public boolean isLexicographic() {
+        return objective.contains(",");
+    }
+
+    /**
+     * Evaluate a plan of the instance that was not found by a model of the whole instance (e.g. assembled from the
+     * subproblems of a decomposition): it is checked and its objectives are computed by a {@link PlanValidator}, and
+     * the plan is rejected if it violates a constraint or misses a lower bound on an objective.
+     * @return the result of the plan, with the value of the objective (null for satisfaction and lexicographic
+     * objectives), or a result without plan if the plan is rejected
+     */
+    Result evaluate(Data data, int[] plan) {
+        PlanValidator.Report report = new PlanValidator(data, constraints).validate(plan);
+        if (!report.isValid()) {
+            if (verbose) {
+                System.out.println("+++INVALID PLAN: " + String.join(", ", report.getMessages()));
+            }
+            return new Result(null, null, null, null);
+        }
+        if (report.getO1() < minO1 || report.getO2() < minO2) {
+            if (verbose) {
+                System.out.println("+++PLAN MISSES THE LOWER BOUNDS: O1 = " + report.getO1() + " (min " + minO1
+                        + "), O2 = " + report.getO2() + " (min " + minO2 + ")");
+            }
+            return new Result(null, null, null, null);
+        }
+        Integer value = null;
+        if (objective.equals("O1")) {
+            value = report.getO1();
+        } else if (objective.equals("O2")) {
+            value = report.getO2();
+        }
+        return new Result(null, null, plan, value);
+    }
+
+    static void enforceConstraints(AgroEcoPlanProblem problem, String[] constraints) {
+        for (String c : constraints) {
+            problem.postConstraintFamily(c);
+        }
+    }
+
+    /**
+     * Build a model of the instance with the constraints and the objective of this configuration. Search limits
+     * are not set.
+     */
+    public AgroEcoPlanProblem buildProblem(Data data) {
+        return buildProblem(data, new IntervalGraphs(data));
+    }
+
+    public AgroEcoPlanProblem buildProblem(Data data, IntervalGraphs graphs) {
+        AgroEcoPlanProblem problem = new AgroEcoPlanProblem(data, graphs, hasConstraint("C4"), verbose);
+        enforceConstraints(problem, constraints);
+        problem.breakBedSymmetries();
+        try (Phases.Phase phase = Phases.start("objective")) {
+            switch (objective) {
+                case "O1": {
+                    IntVar g = problem.postInteractionConstraints();
+                    problem.setGain(g);
+                    if (minO1 > 0) {
+                        problem.getModel().arithm(g, ">=", minO1).post();
+                    }
+                    if (minO2 > 0) {
+                        IntVar O2 = problem.initNumberOfPositivePrecedencesCountBased();
+                        problem.getModel().arithm(O2, ">=", minO2).post();
+                    }
+                    problem.getModel().setObjective(true, g);
+                    break;
+                }
+                case "O2": {
+                    IntVar g = problem.initNumberOfPositivePrecedencesCountBased();
+                    problem.setGain(g);
+                    if (minO2 > 0) {
+                        problem.getModel().arithm(g, ">=", minO2).post();
+                    }
+                    if (minO1 > 0) {
+                        IntVar O1 = problem.postInteractionConstraints();
+                        problem.getModel().arithm(O1, ">=", minO1).post();
+                    }
+                    problem.getModel().setObjective(true, g);
+                    break;
+                }
+                case "O1,O2":
+                case "O2,O1": {
+                    IntVar O1 = problem.postInteractionConstraints();
+                    IntVar O2 = problem.initNumberOfPositivePrecedencesCountBased();
+                    if (minO1 > 0) {
+                        problem.getModel().arithm(O1, ">=", minO1).post();
+                    }
+                    if (minO2 > 0) {
+                        problem.getModel().arithm(O2, ">=", minO2).post();
+                    }
+                    IntVar g = objective.startsWith("O1") ? problem.setLexicographicGain(O1, O2)
+                            : problem.setLexicographicGain(O2, O1);
+                    problem.getModel().setObjective(true, g);
+                    break;
+                }
+                default:
+                    if (minO1 > 0) {
+                        IntVar O1 = problem.postInteractionConstraints();
+                        problem.getModel().arithm(O1, ">=", minO1).post();
+                    }
+                    if (minO2 > 0) {
+                        IntVar O2 = problem.initNumberOfPositivePrecedencesCountBased();
+                        problem.getModel().arithm(O2, ">=", minO2).post();
+                    }
+            }
+            phase.setSize(problem.getModel().getCstrs().length);
+        } catch (AgroEcoPlanProblem.AgroecoplanException e) {
+            throw new RuntimeException(e);
+        }
+        return problem;
+    }
+
+    /**
+     * Build a parallel portfolio of nbCores models of the instance, with search limits.
+     */
+    public CustomParallelPortfolio buildPortfolio(Data data, IntervalGraphs graphs) {
+        CustomParallelPortfolio portfolio = new CustomParallelPortfolio();
+        // Retrieving the value of a variable from a Choco Solution is done by identifying the variable
+        // Through its ID, which is sequentially attributed when a model's variables are created.
+        // Since all models are created identically, IDs are identical across models.
+        for (int i = 0; i < nbCores; i++) {
+            AgroEcoPlanProblem pb = buildProblem(data, graphs);
+            if (objective.equals("SAT")) {
+                pb.getModel().getSolver().limitSolution(1);
+            }
+            pb.getModel().getSolver().showShortStatistics();
+            if (timeout != null)
+                pb.getModel().getSolver().limitTime(timeout);
+            portfolio.addModel(pb);
+        }
+        portfolio.stealNogoodsOnRestarts();
+        return portfolio;
+    }
+
+    /**
+     * Solve an instance, sequentially or with a parallel portfolio.
+     * @return the best solution found, whose plan is null if no solution was found
+     */
+    public Result solve(Data data) {
+        if (data.NB_NEEDS == 0) {
+            return new Result(null, null, new int[0], objective.equals("SAT") ? null : 0, true);
+        }
+        return solve(data, new IntervalGraphs(data));
+    }
+
+    /**
+     * Solve an instance whose interval graphs are already computed.
+     */
+    public Result solve(Data data, IntervalGraphs graphs) {
+        if (data.NB_NEEDS == 0) {
+            return new Result(null, null, new int[0], objective.equals("SAT") ? null : 0, true);
+        }
+        long start = System.currentTimeMillis();
+        Checkpoint checkpoint = null;
+        Checkpoint incumbent = null;
+        if (checkpointPath != null || resumeFrom != null) {
+            String key = ResultCache.key(data, this);
+            checkpoint = new Checkpoint(key);
+            if (resumeFrom != null && resumeFrom.getPlan() != null) {
+                if (resumeFrom.getKey().equals(key)) {
+                    incumbent = resumeFrom;
+                    checkpoint = resumeFrom;
+                } else {
+                    System.out.println("Warning: the checkpoint was saved for another problem, it is ignored.");
+                }
+            }
+        }
+        if (incumbent != null && incumbent.getObjective() == null) {
+            // Any solution is final for satisfaction
+            return new Result(null, null, incumbent.getPlan(), null, true);
+        }
+        AgroEcoPlanProblem problem;
+        Solution sol = null;
+        int[] plan = null;
+        Integer value = null;
+        boolean complete;
+        if (parallel) {
+            CustomParallelPortfolio portfolio = buildPortfolio(data, graphs);
+            for (AgroEcoPlanProblem p : portfolio.problems) {
+                if (profile != null) {
+                    profile.attach(p);
+                }
+                if (incumbent != null) {
+                    postCut(p, incumbent.getObjective());
+                }
+            }
+            Checkpoint c = checkpoint;
+            SolutionSink sink = SolutionSink.best();
+            // The first solution ends its phase, which is not recorded if there is none
+            Phases.Phase firstSolution = Phases.start("first-solution");
+            try (Checkpoint.Writer ignored = startCheckpoint(checkpoint, portfolio.getModels());
+                 Phases.Phase phase = Phases.start("search")) {
+                portfolio.setSolutionListener(p -> onSolution(p, c, start, firstSolution));
+                // Only the best solution is kept, improving ones are streamed to the listeners
+                portfolio.collectSolutions(sink);
+                phase.setSize(sink.getCount());
+            } finally {
+                firstSolution.discard();
+            }
+            problem = portfolio.finderProblem;
+            if (sink.size() > 0) {
+                plan = sink.getPlan(0);
+                value = sink.getObjective(0);
+            }
+            complete = portfolio.getModels().stream()
+                    .anyMatch(m -> m.getSolver().getSearchState() == SearchState.TERMINATED);
+        } else {
+            problem = buildProblem(data, graphs);
+            Solver s = problem.getModel().getSolver();
+            if (timeout != null)
+                s.limitTime(timeout);
+            s.showShortStatistics();
+            s.setSearch(Search.domOverWDegRefSearch(problem.getAssignment()));
+            if (profile != null) {
+                profile.attach(problem);
+            }
+            if (incumbent != null) {
+                postCut(problem, incumbent.getObjective());
+            }
+            Checkpoint c = checkpoint;
+            AgroEcoPlanProblem p = problem;
+            // The first solution ends its phase, which is not recorded if there is none
+            Phases.Phase firstSolution = Phases.start("first-solution");
+            try (Checkpoint.Writer ignored = startCheckpoint(checkpoint, Collections.singletonList(problem.getModel()));
+                 Phases.Phase phase = Phases.start("search")) {
+                s.plugMonitor((IMonitorSolution) () -> onSolution(p, c, start, firstSolution));
+                if (objective.equals("SAT")) {
+                    sol = s.findSolution();
+                } else {
+                    sol = s.findOptimalSolution(problem.getGain(), true);
+                }
+                phase.setSize(s.getSolutionCount());
+            } finally {
+                firstSolution.discard();
+            }
+            complete = s.getSearchState() == SearchState.TERMINATED;
+            if (sol != null) {
+                plan = problem.getPlan(sol);
+                value = problem.getGain() == null ? null : sol.getIntVal(problem.getGain());
+            }
+        }
+        if (plan == null) {
+            if (incumbent != null) {
+                // Nothing better than the incumbent, which is optimal if the search is complete
+                return new Result(null, null, incumbent.getPlan(), incumbent.getObjective(), complete);
+            }
+            return new Result(problem, null, null, null, complete);
+        }
+        // For satisfaction, any solution is final
+        return new Result(problem, sol, plan, value, complete || value == null);
+    }
+
+    private Checkpoint.Writer startCheckpoint(Checkpoint checkpoint, List<Model> models) {
+        if (checkpoint == null || checkpointPath == null) {
+            return null;
+        }
+        return new Checkpoint.Writer(checkpoint, checkpointPath, checkpointPeriodMs, models);
+    }
+
+    /**
+     * Only look for plans strictly better than the given value.
+     */
+    private static void postCut(AgroEcoPlanProblem problem, int value) {
+        problem.getModel().arithm(problem.getGain(), ">", value).post();
+    }
+
+    /**
+     * Record the plan just found by the problem in the checkpoint, if any, and stream it to the listeners.
+     */
+    private void onSolution(AgroEcoPlanProblem problem, Checkpoint checkpoint, long start, Phases.Phase firstSolution) {
+        // Only the first call ends the phase
+        firstSolution.close();
+        if (checkpoint == null && solutionListeners.isEmpty()) {
+            return;
+        }
+        int[] plan = currentPlan(problem);
+        Integer value = currentValue(problem);
+        if (checkpoint != null) {
+            checkpoint.update(plan, value);
+        }
+        long time = System.currentTimeMillis() - start;
+        for (SolutionListener listener : solutionListeners) {
+            listener.onSolution(plan.clone(), value, time);
+        }
+    }
+
+    private static int[] currentPlan(AgroEcoPlanProblem problem) {
+        return Arrays.stream(problem.getAssignment()).mapToInt(IntVar::getValue).toArray();
+    }
+
+    private static Integer currentValue(AgroEcoPlanProblem problem) {
+        return problem.getGain() == null ? null : problem.getGain().getValue();
+    }
+
+    /**
+     * Outcome of a resolution.
+     */
+    public static class Result {
+
+        private final AgroEcoPlanProblem problem;
+        private final Solution solution;
+        private final int[] plan;
+        private final Integer objectiveValue;
+        private final boolean proven;
+
+        Result(AgroEcoPlanProblem problem, Solution solution, int[] plan, Integer objectiveValue) {
+            this(problem, solution, plan, objectiveValue, false);
+        }
+
+        Result(AgroEcoPlanProblem problem, Solution solution, int[] plan, Integer objectiveValue, boolean proven) {
+            this.problem = problem;
+            this.solution = solution;
+            this.plan = plan;
+            this.objectiveValue = objectiveValue;
+            this.proven = proven;
+        }
+
+        /**
+         * @return the problem that found the solution, null if there was nothing to solve
+         */
+        public AgroEcoPlanProblem getProblem() {
+            return problem;
+        }
+
+        /**
+         * @return the solution with all the variables of the problem, only recorded by sequential searches
+         */
+        public Solution getSolution() {
+            return solution;
+        }
+
+        /**
+         * @return the bed of each need, or null if no solution was found
+         */
+        public int[] getPlan() {
+            return plan;
+        }
+
+        /**
+         * @return the value of the optimization objective, or null for satisfaction
+         */
+        public Integer getObjectiveValue() {
+            return objectiveValue;
+        }
+
+        /**
+         * @return true if the result is final: the solution is optimal (or any solution for satisfaction), or the
+         * problem was proven infeasible
+         */
+        public boolean isProven() {
+            return proven;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.agroecoplan;
+
+import com.opencsv.exceptions.CsvException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running solver service, with the JDK built-in HTTP server, only reachable from the local host (requests
+ * name files of the server, and errors are returned to the client). Endpoints:
+ * <ul>
+ *     <li>GET or POST /solve?needs=...&amp;beds=...&amp;interactions=...[&amp;precedences=...&amp;delays=...]
+ *     [&amp;cst=C1,C2][&amp;opt=O1][&amp;timeout=30s][&amp;cores=1][&amp;minO1=0][&amp;minO2=0]: solve the instance
+ *     given by paths of files readable by the server, and return the plan as CSV (200), or 422 if no solution was
+ *     found. The status and objective value are also given in the headers X-Status and X-Objective.</li>
+ *     <li>GET /status: size and hit rate of the instance cache.</li>
+ * </ul>
+ */
+@CommandLine.Command(
+        name = "serve",
+        description = "Run a solver service over HTTP"
+)
+public class SolverServer implements Runnable {
+
+    @CommandLine.Option(
+            names = {"--port"},
+            description = "Port of the service",
+            defaultValue = "8080"
+    )
+    int port;
+
+    @CommandLine.Option(
+            names = {"--threads"},
+            description = "Number of requests handled simultaneously",
+            defaultValue = "2"
+    )
+    int nbThreads;
+
+    @CommandLine.Option(
+            names = {"--cache-size"},
+            description = "Number of instances kept in the cache",
+            defaultValue = "32"
+    )
+    int cacheSize;
+
+    private InstanceCache cache;
+
+    @Override
+    public void run() {
+        cache = new InstanceCache(cacheSize);
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/status", this::handleStatus);
+        server.setExecutor(Executors.newFixedThreadPool(nbThreads));
+        server.start();
+        System.out.println("Solver service listening on " + server.getAddress());
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (!params.containsKey("needs") || !params.containsKey("beds") || !params.containsKey("interactions")) {
+                respond(exchange, 400, "Missing parameter: needs, beds and interactions are required\n");
+                return;
+            }
+            InstanceCache.Instance instance = cache.get(params.get("needs"), params.get("interactions"),
+                    params.get("beds"), params.get("precedences"), params.get("delays"));
+            SolverConfiguration config = new SolverConfiguration(params.getOrDefault("cst", "").split(","),
+                    params.getOrDefault("opt", "SAT"), params.getOrDefault("timeout", "1m"));
+            config.setMinO1(Integer.parseInt(params.getOrDefault("minO1", "0")));
+            config.setMinO2(Integer.parseInt(params.getOrDefault("minO2", "0")));
+            int cores = Integer.parseInt(params.getOrDefault("cores", "1"));
+            if (cores > 1) {
+                config.setParallel(cores);
+            }
+            SolverConfiguration.Result result = config.solve(instance.data, instance.graphs);
+            if (result.getPlan() == null) {
+                exchange.getResponseHeaders().add("X-Status", "NO SOLUTION");
+                respond(exchange, 422, "NO SOLUTION FOUND\n");
+                return;
+            }
+            exchange.getResponseHeaders().add("X-Status", "SOLVED");
+            if (result.getObjectiveValue() != null) {
+                exchange.getResponseHeaders().add("X-Objective", String.valueOf(result.getObjectiveValue()));
+            }
+            StringWriter csv = new StringWriter();
+            new PlanExporter(instance.data, instance.data.NB_BEDS, result.getPlan()).writeCsv(csv);
+            respond(exchange, 200, csv.toString());
+        } catch (IOException | CsvException | RuntimeException e) {
+            respond(exchange, 400, "Error: " + e.getMessage() + "\n");
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, "cached instances: " + cache.size() + "\nhits: " + cache.getHits()
+                + "\nmisses: " + cache.getMisses() + "\n");
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package org.agroecoplan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+/**
+ * Solve variants of a base instance concurrently, and compare them. A variant combines changes of the instance
+ * (extra beds, shifted planting windows, other interaction values) and of the configuration (other constraints).
+ * The base instance is never modified, and variants that do not change the crop calendar share its interval graphs.
+ * <pre>
+ * List&lt;WhatIfAnalysis.Outcome&gt; outcomes = new WhatIfAnalysis(data, config, 4).run(Arrays.asList(
+ *         new WhatIfAnalysis.Variant("baseline"),
+ *         new WhatIfAnalysis.Variant("+10 beds").extraBeds(10),
+ *         new WhatIfAnalysis.Variant("late carrots").shiftPlanting("carotte", 2),
+ *         new WhatIfAnalysis.Variant("no dilution").constraints("C1", "C2")));
+ * </pre>
+ */
+public class WhatIfAnalysis {
+
+    /**
+     * A variation of the base instance and configuration.
+     */
+    public static class Variant {
+
+        private final String name;
+        private final List<UnaryOperator<Data>> dataChanges = new ArrayList<>();
+        private String[] constraints = null;
+        private boolean calendarChanged = false;
+
+        public Variant(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Add beds after the existing ones (see {@link Data#withExtraBeds}).
+         */
+        public Variant extraBeds(int count) {
+            dataChanges.add(d -> d.withExtraBeds(count));
+            return this;
+        }
+
+        /**
+         * Enforce another set of constraints.
+         */
+        public Variant constraints(String... constraints) {
+            this.constraints = constraints;
+            return this;
+        }
+
+        /**
+         * Cultivate all the needs of a species some weeks later (or earlier if negative).
+         */
+        public Variant shiftPlanting(String species, int weeks) {
+            dataChanges.add(d -> d.withShiftedSpecies(species, weeks));
+            calendarChanged = true;
+            return this;
+        }
+
+        /**
+         * Change the interaction between two species.
+         */
+        public Variant interaction(String species1, String species2, int value) {
+            dataChanges.add(d -> d.withInteraction(species1, species2, value));
+            return this;
+        }
+
+        Data apply(Data base) {
+            Data data = base;
+            for (UnaryOperator<Data> change : dataChanges) {
+                data = change.apply(data);
+            }
+            return data;
+        }
+    }
+
+    /**
+     * Result of a variant.
+     */
+    public static class Outcome {
+
+        private final Variant variant;
+        private final String status;
+        private final Integer objectiveValue;
+        private final boolean proven;
+        private final long timeMs;
+        private final int[] plan;
+
+        Outcome(Variant variant, String status, Integer objectiveValue, boolean proven, long timeMs, int[] plan) {
+            this.variant = variant;
+            this.status = status;
+            this.objectiveValue = objectiveValue;
+            this.proven = proven;
+            this.timeMs = timeMs;
+            this.plan = plan;
+        }
+
+        public String getName() {
+            return variant.getName();
+        }
+
+        /**
+         * @return SOLVED, NO SOLUTION, or ERROR followed by the error message
+         */
+        public String getStatus() {
+            return status;
+        }
+
+        public Integer getObjectiveValue() {
+            return objectiveValue;
+        }
+
+        public boolean isProven() {
+            return proven;
+        }
+
+        public long getTimeMs() {
+            return timeMs;
+        }
+
+        /**
+         * @return the bed of each need in the variant, or null if no solution was found
+         */
+        public int[] getPlan() {
+            return plan;
+        }
+    }
+
+    private final Data base;
+    private final SolverConfiguration config;
+    private final int nbWorkers;
+    private IntervalGraphs baseGraphs;
+
+    /**
+     * @param nbWorkers number of variants solved simultaneously
+     */
+    public WhatIfAnalysis(Data base, SolverConfiguration config, int nbWorkers) {
+        this.base = base;
+        this.config = config;
+        this.nbWorkers = nbWorkers;
+    }
+
+    /**
+     * Solve the variants concurrently.
+     * @return the outcome of each variant, in the same order
+     */
+    public List<Outcome> run(List<Variant> variants) {
+        if (baseGraphs == null) {
+            baseGraphs = new IntervalGraphs(base);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        try {
+            List<Future<Outcome>> futures = new ArrayList<>();
+            for (Variant variant : variants) {
+                futures.add(executor.submit(() -> solve(variant)));
+            }
+            List<Outcome> outcomes = new ArrayList<>();
+            for (int k = 0; k < variants.size(); k++) {
+                try {
+                    outcomes.add(futures.get(k).get());
+                } catch (ExecutionException e) {
+                    outcomes.add(new Outcome(variants.get(k), "ERROR: " + e.getCause().getMessage(), null, false, 0, null));
+                }
+            }
+            return outcomes;
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Outcome solve(Variant variant) {
+        long start = System.currentTimeMillis();
+        Data data = variant.apply(base);
+        SolverConfiguration variantConfig = variant.constraints == null ? config : config.withConstraints(variant.constraints);
+        // Interval graphs only depend on the calendar
+        IntervalGraphs graphs = variant.calendarChanged ? new IntervalGraphs(data) : baseGraphs;
+        SolverConfiguration.Result result = variantConfig.solve(data, graphs);
+        long time = System.currentTimeMillis() - start;
+        return new Outcome(variant, result.getPlan() == null ? "NO SOLUTION" : "SOLVED", result.getObjectiveValue(),
+                result.isProven(), time, result.getPlan());
+    }
+
+    /**
+     * @return a comparison table of the outcomes, with a header line: variant, status, objective, proven, time (ms)
+     */
+    public static String[][] toTable(List<Outcome> outcomes) {
+        String[][] table = new String[outcomes.size() + 1][];
+        table[0] = new String[]{"variant", "status", "objective", "proven", "time_ms"};
+        for (int k = 0; k < outcomes.size(); k++) {
+            Outcome o = outcomes.get(k);
+            table[k + 1] = new String[]{o.getName(), o.getStatus(),
+                    o.getObjectiveValue() == null ? "" : String.valueOf(o.getObjectiveValue()),
+                    String.valueOf(o.isProven()), String.valueOf(o.getTimeMs())};
+        }
+        return table;
+    }
+}
@@ -0,0 +1,61 @@
+import com.opencsv.exceptions.CsvException;
+import org.agroecoplan.Data;
+import org.agroecoplan.GardenDecomposition;
+import org.agroecoplan.PlanValidator;
+import org.agroecoplan.RollingHorizonSolver;
+import org.agroecoplan.SolverConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+public class TestDecompositions {
+
+    private Data data() throws IOException, CsvException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_symmetry_mini.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_symmetry_mini.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions_symmetry_mini.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        return new Data(needs, interactions, beds, precedences, delays);
+    }
+
+    @Test
+    public void testRollingHorizon() throws IOException, CsvException {
+        Data data = data();
+        for (String objective : new String[]{"O1", "O2"}) {
+            SolverConfiguration config = new SolverConfiguration(new String[]{"C2"}, objective, "30s");
+            SolverConfiguration.Result result = new RollingHorizonSolver(config, 30, 10, 2).solve(data);
+            Assert.assertNotNull(result.getPlan(), objective);
+            PlanValidator.Report report = new PlanValidator(data, config.getConstraints()).validate(result.getPlan());
+            Assert.assertTrue(report.isValid(), objective);
+            Assert.assertEquals((int) result.getObjectiveValue(), objective.equals("O1") ? report.getO1() : report.getO2(), objective);
+        }
+    }
+
+    @Test
+    public void testRollingHorizonBounds() throws IOException, CsvException {
+        Data data = data();
+        SolverConfiguration config = new SolverConfiguration(new String[]{"C2"}, "O1", "30s");
+        int o1 = new RollingHorizonSolver(config, 30, 10, 2).solve(data).getObjectiveValue();
+        // The bound holds for the whole calendar, not for each window
+        config.setMinO1(o1);
+        SolverConfiguration.Result result = new RollingHorizonSolver(config, 30, 10, 2).solve(data);
+        Assert.assertNotNull(result.getPlan());
+        Assert.assertTrue(result.getObjectiveValue() >= o1);
+        config.setMinO1(1000);
+        Assert.assertNull(new RollingHorizonSolver(config, 30, 10, 2).solve(data).getPlan());
+    }
+
+    @Test
+    public void testGardenDecomposition() throws IOException, CsvException {
+        // Default instance: 80 beds in 8 gardens, with adjacency across gardens
+        Data data = new Data();
+        SolverConfiguration config = new SolverConfiguration(new String[]{"C2", "C3", "C4"}, "O1", "5s");
+        SolverConfiguration.Result result = new GardenDecomposition(config, 4).solve(data);
+        Assert.assertNotNull(result.getPlan());
+        PlanValidator.Report report = new PlanValidator(data, config.getConstraints()).validate(result.getPlan());
+        Assert.assertTrue(report.isValid(), String.join("\n", report.getMessages()));
+        Assert.assertEquals((int) result.getObjectiveValue(), report.getO1());
+    }
+}
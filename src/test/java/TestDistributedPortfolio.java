@@ -0,0 +1,69 @@
+import com.opencsv.exceptions.CsvException;
+import org.agroecoplan.Data;
+import org.agroecoplan.DistributedPortfolio;
+import org.agroecoplan.SolverConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+public class TestDistributedPortfolio {
+
+    @Test
+    public void testLoopback() throws IOException, CsvException, ExecutionException, InterruptedException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_mini_instance.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_mini_instance.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        Data data = new Data(needs, interactions, beds, precedences, delays);
+
+        SolverConfiguration config = new SolverConfiguration(new String[]{"C4", "C6"}, "O2", "30s");
+        SolverConfiguration.Result sequential = config.solve(data);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        SolverConfiguration workerConfig = new SolverConfiguration(new String[]{"C4", "C6"}, "O2", "30s");
+        workerConfig.setParallel(2);
+        CompletableFuture<SolverConfiguration.Result> coordinator = CompletableFuture.supplyAsync(() -> {
+            try {
+                return new DistributedPortfolio(config).coordinate(port, 2);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        CompletableFuture<?>[] workers = new CompletableFuture[2];
+        for (int w = 0; w < 2; w++) {
+            workers[w] = CompletableFuture.runAsync(() -> {
+                try {
+                    // Retry until the coordinator listens
+                    for (int attempt = 0; ; attempt++) {
+                        try {
+                            new DistributedPortfolio(workerConfig).work(data, "localhost", port);
+                            return;
+                        } catch (IOException e) {
+                            if (attempt > 50) {
+                                throw e;
+                            }
+                            Thread.sleep(100);
+                        }
+                    }
+                } catch (IOException | InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        CompletableFuture.allOf(workers).get();
+        SolverConfiguration.Result distributed = coordinator.get();
+
+        Assert.assertEquals(distributed.getPlan() == null, sequential.getPlan() == null);
+        if (sequential.getPlan() != null) {
+            Assert.assertEquals(distributed.getObjectiveValue(), sequential.getObjectiveValue());
+        }
+    }
+}
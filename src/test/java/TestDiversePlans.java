@@ -0,0 +1,51 @@
+import com.opencsv.exceptions.CsvException;
+import org.agroecoplan.Data;
+import org.agroecoplan.DiversePlans;
+import org.agroecoplan.PlanValidator;
+import org.agroecoplan.SolverConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class TestDiversePlans {
+
+    private Data data() throws IOException, CsvException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_symmetry_mini.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_symmetry_mini.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions_symmetry_mini.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        return new Data(needs, interactions, beds, precedences, delays);
+    }
+
+    @Test
+    public void testPlansAreDiverse() throws IOException, CsvException {
+        Data data = data();
+        int minDistance = 3;
+        SolverConfiguration config = new SolverConfiguration(new String[]{"C2"}, "O1", "30s");
+        List<SolverConfiguration.Result> plans = new DiversePlans(config, 3, minDistance, 2).solve(data);
+        Assert.assertFalse(plans.isEmpty());
+
+        // The first plan is an optimal plan
+        SolverConfiguration.Result optimum = config.solve(data);
+        Assert.assertEquals(plans.get(0).getObjectiveValue(), optimum.getObjectiveValue());
+
+        for (int k = 0; k < plans.size(); k++) {
+            int[] plan = plans.get(k).getPlan();
+            PlanValidator.Report report = new PlanValidator(data, config.getConstraints()).validate(plan);
+            Assert.assertTrue(report.isValid(), "plan " + k);
+            Assert.assertEquals((int) plans.get(k).getObjectiveValue(), report.getO1(), "plan " + k);
+            for (int l = 0; l < k; l++) {
+                int distance = 0;
+                for (int i = 0; i < plan.length; i++) {
+                    if (plan[i] != plans.get(l).getPlan()[i]) {
+                        distance++;
+                    }
+                }
+                Assert.assertTrue(distance >= minDistance, "plans " + l + " and " + k + ": " + distance);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import com.opencsv.exceptions.CsvException;
+import org.agroecoplan.AgroEcoPlanProblem;
+import org.agroecoplan.Data;
+import org.chocosolver.solver.Solution;
+import org.chocosolver.solver.variables.IntVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestEdits {
+
+    /**
+     * Instance with two interchangeable beds, where the first broad bean cannot use bed 1 (C4).
+     */
+    private Data data() throws IOException, CsvException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_rotation_mini.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_mini_instance.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        return new Data(needs, interactions, beds, precedences, delays);
+    }
+
+    /**
+     * @return the optimum of O2 of a model built from scratch with the edits, without symmetry breaking, or -1 if
+     * there is no solution
+     */
+    private static int optimum(Data data, List<String> families, Map<Integer, Integer> fixed,
+                               Map<Integer, Integer> forbidden) throws AgroEcoPlanProblem.AgroecoplanException {
+        AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data, false, false);
+        for (String family : families) {
+            pb.postConstraintFamily(family);
+        }
+        fixed.forEach((i, b) -> pb.getModel().arithm(pb.getAssignment()[i], "=", b).post());
+        forbidden.forEach((i, b) -> pb.getModel().arithm(pb.getAssignment()[i], "!=", b).post());
+        IntVar g = pb.initNumberOfPositivePrecedencesCountBased();
+        Solution sol = pb.getModel().getSolver().findOptimalSolution(g, true);
+        return sol == null ? -1 : sol.getIntVal(g);
+    }
+
+    /**
+     * @return the optimum found by solving the edited model again, or -1 if there is no solution
+     */
+    private static int resolve(AgroEcoPlanProblem pb) {
+        Solution sol = pb.resolve(null);
+        return sol == null ? -1 : sol.getIntVal(pb.getGain());
+    }
+
+    private static int nbSolutions(Data data, List<String> families) throws AgroEcoPlanProblem.AgroecoplanException {
+        AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data, false, false);
+        for (String family : families) {
+            pb.postConstraintFamily(family);
+        }
+        return pb.getModel().getSolver().findAllSolutions().size();
+    }
+
+    @Test
+    public void testEditsKeepOptimum() throws IOException, CsvException, AgroEcoPlanProblem.AgroecoplanException {
+        Data data = data();
+        AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data, false, false);
+        Assert.assertEquals(pb.breakBedSymmetries(), 1);
+        pb.setGain(pb.initNumberOfPositivePrecedencesCountBased());
+        List<String> families = new ArrayList<>();
+        Map<Integer, Integer> fixed = new HashMap<>();
+        Map<Integer, Integer> forbidden = new HashMap<>();
+        Assert.assertEquals(resolve(pb), optimum(data, families, fixed, forbidden), "initial");
+
+        // Breaking the symmetry of beds 1 and 2 puts the first broad bean on bed 1, which C4 forbids
+        pb.setConstraintFamily("C4", true);
+        families.add("C4");
+        Assert.assertEquals(resolve(pb), optimum(data, families, fixed, forbidden), "enable C4");
+
+        pb.setConstraintFamily("C3", true);
+        families.add("C3");
+        Assert.assertEquals(resolve(pb), optimum(data, families, fixed, forbidden), "enable C3");
+
+        pb.fixBed(2, 2);
+        fixed.put(2, 2);
+        Assert.assertEquals(resolve(pb), optimum(data, families, fixed, forbidden), "fix");
+
+        // The second broad bean overlaps the fixed leek, and has no bed left
+        pb.forbidBed(1, 1);
+        forbidden.put(1, 1);
+        Assert.assertEquals(resolve(pb), -1, "forbid");
+        Assert.assertEquals(optimum(data, families, fixed, forbidden), -1, "forbid");
+
+        pb.allowBed(1, 1);
+        forbidden.remove(1);
+        Assert.assertEquals(resolve(pb), optimum(data, families, fixed, forbidden), "allow");
+
+        pb.unfixBed(2);
+        fixed.remove(2);
+        Assert.assertEquals(resolve(pb), optimum(data, families, fixed, forbidden), "unfix");
+
+        pb.setConstraintFamily("C3", false);
+        families.remove("C3");
+        Assert.assertEquals(resolve(pb), optimum(data, families, fixed, forbidden), "disable C3");
+    }
+
+    @Test
+    public void testNeedWeeksKeepSolutions() throws IOException, CsvException, AgroEcoPlanProblem.AgroecoplanException {
+        AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data(), false, false);
+        Assert.assertEquals(pb.breakBedSymmetries(), 1);
+        List<String> families = new ArrayList<>();
+
+        // The first leek now overlaps the first broad bean
+        pb.setNeedWeeks(2, 1, 20);
+        Assert.assertEquals(pb.getModel().getSolver().findAllSolutions().size(), nbSolutions(pb.getData(), families),
+                "weeks");
+
+        pb.setConstraintFamily("C4", true);
+        families.add("C4");
+        Assert.assertEquals(pb.getModel().getSolver().findAllSolutions().size(), nbSolutions(pb.getData(), families),
+                "weeks, enable C4");
+    }
+}
@@ -0,0 +1,64 @@
+import com.opencsv.exceptions.CsvException;
+import org.agroecoplan.AgroEcoPlanProblem;
+import org.agroecoplan.Data;
+import org.agroecoplan.ParetoFront;
+import org.agroecoplan.SolverConfiguration;
+import org.chocosolver.solver.Solution;
+import org.chocosolver.solver.variables.IntVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestParetoFront {
+
+    private Data data() throws IOException, CsvException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_symmetry_mini.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_symmetry_mini.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions_symmetry_mini.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        return new Data(needs, interactions, beds, precedences, delays);
+    }
+
+    /**
+     * @return the front computed level by level: O1 is maximized under O2 &gt;= e for e = 0, 1, ... until there is
+     * no solution, and the last level of each optimum of O1 is a point, as {O1, O2}
+     */
+    private static List<int[]> sweep(Data data) throws AgroEcoPlanProblem.AgroecoplanException {
+        List<int[]> front = new ArrayList<>();
+        for (int e = 0; ; e++) {
+            AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data, true, false);
+            pb.postConstraintFamily("C2");
+            IntVar o1 = pb.postInteractionConstraints();
+            IntVar o2 = pb.initNumberOfPositivePrecedencesCountBased();
+            pb.getModel().arithm(o2, ">=", e).post();
+            Solution sol = pb.getModel().getSolver().findOptimalSolution(o1, true);
+            if (sol == null) {
+                return front;
+            }
+            if (!front.isEmpty() && front.get(front.size() - 1)[0] == sol.getIntVal(o1)) {
+                front.get(front.size() - 1)[1] = e;
+            } else {
+                front.add(new int[]{sol.getIntVal(o1), e});
+            }
+        }
+    }
+
+    @Test
+    public void testFrontMatchesSweep() throws IOException, CsvException, AgroEcoPlanProblem.AgroecoplanException {
+        Data data = data();
+        List<int[]> expected = sweep(data);
+        SolverConfiguration config = new SolverConfiguration(new String[]{"C2"}, "O1", "30s");
+        List<ParetoFront.Point> front = new ParetoFront(config, 2).solve(data);
+        Assert.assertEquals(front.size(), expected.size());
+        for (int k = 0; k < front.size(); k++) {
+            ParetoFront.Point p = front.get(k);
+            Assert.assertEquals(p.getO1(), expected.get(k)[0], "point " + k);
+            Assert.assertEquals(p.getO2(), expected.get(k)[1], "point " + k);
+            Assert.assertTrue(p.isProven(), "point " + k);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import com.opencsv.exceptions.CsvException;
+import org.agroecoplan.AgroEcoPlanProblem;
+import org.agroecoplan.Data;
+import org.agroecoplan.PlanValidator;
+import org.chocosolver.solver.Solution;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.variables.IntVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+public class TestPlanValidator {
+
+    /**
+     * Instance whose adjacency and interactions are not symmetric: bed 3 lists bed 1 as adjacent, but bed 1 only
+     * lists bed 2, and a carrot benefits from a leek, but not the reverse.
+     */
+    private Data data() throws IOException, CsvException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_symmetry_mini.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_asymmetric_mini.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions_asymmetric_mini.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        return new Data(needs, interactions, beds, precedences, delays);
+    }
+
+    private Data data(String needsFile, String bedsFile, String interactionsFile) throws IOException, CsvException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/" + needsFile).getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/" + bedsFile).getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/" + interactionsFile).getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        return new Data(needs, interactions, beds, precedences, delays);
+    }
+
+    private static void assertViolations(PlanValidator validator, int[] plan, Map<String, Integer> expected) {
+        PlanValidator.Report report = validator.validate(plan);
+        String name = Arrays.toString(plan);
+        Assert.assertFalse(report.isValid(), name);
+        Assert.assertEquals(report.getViolations(), expected, name + " " + report.getMessages());
+    }
+
+    @Test
+    public void testObjectivesMatchModel() throws IOException, CsvException, AgroEcoPlanProblem.AgroecoplanException {
+        Data data = data();
+        PlanValidator validator = new PlanValidator(data, new String[]{"C2", "C3"});
+
+        // Optimal plans of O1 and O2
+        for (String objective : new String[]{"O1", "O2"}) {
+            AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data, true, false);
+            pb.postConstraintFamily("C2");
+            pb.postConstraintFamily("C3");
+            IntVar o1 = pb.postInteractionConstraints();
+            IntVar o2 = pb.initNumberOfPositivePrecedencesCountBased();
+            pb.getModel().getSolver().limitTime("30s");
+            Solution sol = pb.getModel().getSolver().findOptimalSolution(objective.equals("O1") ? o1 : o2, true);
+            Assert.assertNotNull(sol, objective);
+            int[] plan = Arrays.stream(pb.getAssignment()).mapToInt(sol::getIntVal).toArray();
+            PlanValidator.Report report = validator.validate(plan);
+            Assert.assertTrue(report.isValid(), objective);
+            Assert.assertEquals(report.getO1(), sol.getIntVal(o1), objective);
+            Assert.assertEquals(report.getO2(), sol.getIntVal(o2), objective);
+        }
+
+        // Any plan, including those using the adjacency listed by one bed only
+        AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data, true, false);
+        pb.postConstraintFamily("C2");
+        pb.postConstraintFamily("C3");
+        IntVar o1 = pb.postInteractionConstraints();
+        IntVar o2 = pb.initNumberOfPositivePrecedencesCountBased();
+        Solver s = pb.getModel().getSolver();
+        for (int n = 0; n < 1000 && s.solve(); n++) {
+            int[] plan = Arrays.stream(pb.getAssignment()).mapToInt(IntVar::getValue).toArray();
+            PlanValidator.Report report = validator.validate(plan);
+            String name = Arrays.toString(plan);
+            Assert.assertTrue(report.isValid(), name);
+            Assert.assertEquals(report.getO1(), o1.getValue(), name);
+            Assert.assertEquals(report.getO2(), o2.getValue(), name);
+        }
+    }
+
+    @Test
+    public void testOverlapsAndRotations() throws IOException, CsvException {
+        // Broad beans (the first one cannot use bed 1), leeks and carrots, each species with a return delay
+        Data data = data("besoins_rotation_mini.csv", "donneesplanches_mini_instance.csv", "interactions.csv");
+        PlanValidator validator = new PlanValidator(data, new String[]{"C1", "C4"});
+        // The second broad bean and the first leek overlap on bed 2, the first broad bean is on bed 1
+        assertViolations(validator, new int[]{1, 2, 2, 1, 2, 1}, Map.of("C4", 1, "overlap", 1));
+        // Both broad beans on bed 2, within their return delay
+        assertViolations(validator, new int[]{2, 2, 1, 2, 1, 2}, Map.of("C1", 1));
+        Assert.assertTrue(new PlanValidator(data, new String[0]).validate(new int[]{2, 2, 1, 2, 1, 2}).isValid());
+    }
+
+    @Test
+    public void testGroups() throws IOException, CsvException {
+        // Beds 1-2 and 3-4 are adjacent, but not beds 2 and 3
+        Data data = data("besoins_symmetry_mini.csv", "donneesplanches_symmetry_mini.csv", "interactions.csv");
+        PlanValidator validator = new PlanValidator(data, new String[]{"C5"});
+        // The two carrots of the first line on beds 2 and 3, the two broad beans on beds 1 and 2
+        int[] plan = {2, 3, 1, 3, 4, 1, 2, 4, 3, 1};
+        assertViolations(validator, plan, Map.of("C5", 1));
+        // Both groups on beds 3 and 4
+        int[] valid = {3, 4, 1, 1, 2, 3, 4, 2, 1, 3};
+        Assert.assertTrue(validator.validate(valid).isValid(), Arrays.toString(valid));
+    }
+
+    @Test
+    public void testBedsAndPrecedences() throws IOException, CsvException {
+        // A potato and a leek fixed on bed 1, and a broad bean; a leek cannot follow a potato
+        Data data = data("besoins_presolve_mini.csv", "donneesplanches_mini_instance.csv", "interactions.csv");
+        PlanValidator validator = new PlanValidator(data, new String[]{"C6"});
+        assertViolations(validator, new int[]{1, 2, 1}, Map.of("C6", 1));
+        assertViolations(validator, new int[]{2, 1, 1}, Map.of("fixed", 1));
+        assertViolations(validator, new int[]{1, 3, 1}, Map.of("bed", 1));
+        assertViolations(validator, new int[]{0, 1, 1}, Map.of("bed", 1));
+        assertViolations(validator, new int[]{1, 1}, Map.of("plan", 1));
+        PlanValidator.Report report = validator.validate(new int[]{1, 1, 1});
+        Assert.assertTrue(report.isValid(), report.getMessages().toString());
+        Assert.assertEquals(report.getO2(), 1);
+    }
+}
@@ -2,6 +2,8 @@ import com.opencsv.exceptions.CsvException;
 import org.agroecoplan.AgroEcoPlanProblem;
 import org.agroecoplan.Data;
 import org.chocosolver.solver.Solution;
+import org.chocosolver.solver.variables.IntVar;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
@@ -32,4 +34,51 @@ public class TestPrecedence {
             System.out.println(s);
         }
     }
+
+    @Test
+    public void testForbidNegativePrecedencesPropagator() throws IOException, CsvException, AgroEcoPlanProblem.AgroecoplanException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_mini_instance.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_mini_instance.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        Data data = new Data(needs, interactions, beds, precedences, delays);
+
+        AgroEcoPlanProblem tableBased = new AgroEcoPlanProblem(data, true, false);
+        tableBased.postForbidNegativePrecedencesConstraintTableBased();
+        IntVar g1 = tableBased.initNumberOfPositivePrecedencesCountBased();
+        Solution sol1 = tableBased.getModel().getSolver().findOptimalSolution(g1, true);
+
+        AgroEcoPlanProblem propBased = new AgroEcoPlanProblem(data, true, false);
+        propBased.postForbidNegativePrecedencesConstraint();
+        IntVar g2 = propBased.initNumberOfPositivePrecedencesCountBased();
+        Solution sol2 = propBased.getModel().getSolver().findOptimalSolution(g2, true);
+
+        Assert.assertEquals(sol1 == null, sol2 == null);
+        if (sol1 != null) {
+            Assert.assertEquals(sol1.getIntVal(g1), sol2.getIntVal(g2));
+        }
+    }
+
+    @Test
+    public void testRotationDelaysPropagator() throws IOException, CsvException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_rotation_mini.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_mini_instance.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        Data data = new Data(needs, interactions, beds, precedences, delays);
+
+        AgroEcoPlanProblem decomposed = new AgroEcoPlanProblem(data, true, false);
+        decomposed.postRotationConstraintsDecomposed();
+        int nbSolutions1 = decomposed.getModel().getSolver().findAllSolutions().size();
+
+        AgroEcoPlanProblem propBased = new AgroEcoPlanProblem(data, true, false);
+        propBased.postRotationConstraints();
+        int nbSolutions2 = propBased.getModel().getSolver().findAllSolutions().size();
+
+        // Needs of the same species must alternate between the two beds, and the first one cannot use bed 1
+        Assert.assertEquals(nbSolutions1, 1);
+        Assert.assertEquals(nbSolutions2, nbSolutions1);
+    }
 }
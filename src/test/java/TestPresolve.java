@@ -0,0 +1,34 @@
+import com.opencsv.exceptions.CsvException;
+import org.agroecoplan.Data;
+import org.agroecoplan.PlanValidator;
+import org.agroecoplan.Presolve;
+import org.agroecoplan.SolverConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+public class TestPresolve {
+
+    @Test
+    public void testPresolveKeepsSeparatingNeeds() throws IOException, CsvException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_presolve_mini.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_mini_instance.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        Data data = new Data(needs, interactions, beds, precedences, delays);
+
+        // The leek cannot directly follow the potato, both fixed on bed 1: the broad bean, which overlaps nothing,
+        // must be cultivated between them
+        SolverConfiguration config = new SolverConfiguration(new String[]{"C6"}, "SAT", "30s");
+        Presolve pre = new Presolve(data, config);
+        Assert.assertNotEquals(pre.run(), Presolve.Verdict.INFEASIBLE);
+        SolverConfiguration.Result result = config.solve(pre.getReducedData());
+        Assert.assertNotNull(result.getPlan());
+
+        int[] plan = pre.restore(result.getPlan());
+        Assert.assertEquals(plan[1], 1);
+        Assert.assertTrue(new PlanValidator(data, config.getConstraints()).validate(plan).isValid());
+    }
+}
@@ -0,0 +1,83 @@
+import com.opencsv.exceptions.CsvException;
+import org.agroecoplan.AgroEcoPlanProblem;
+import org.agroecoplan.Data;
+import org.chocosolver.solver.Solution;
+import org.chocosolver.solver.variables.IntVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+public class TestSymmetries {
+
+    /**
+     * Instance with two pairs of twin beds (1-2 and 3-4) and two groups of identical crops.
+     */
+    private Data data() throws IOException, CsvException {
+        String needs = getClass().getClassLoader().getResource("testPrecedence/besoins_symmetry_mini.csv").getPath();
+        String beds = getClass().getClassLoader().getResource("testPrecedence/donneesplanches_symmetry_mini.csv").getPath();
+        String interactions = getClass().getClassLoader().getResource("testPrecedence/interactions_symmetry_mini.csv").getPath();
+        String precedences = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_precedence_mini.csv").getPath();
+        String delays = getClass().getClassLoader().getResource("testPrecedence/interactions_temporelles_delais_mini.csv").getPath();
+        return new Data(needs, interactions, beds, precedences, delays);
+    }
+
+    /**
+     * @return the optimum of the objective (O1 or O2) under the constraints, with or without breaking bed symmetries
+     */
+    private static int optimum(Data data, String[] constraints, String objective, boolean bedSymmetries)
+            throws AgroEcoPlanProblem.AgroecoplanException {
+        return optimum(data, constraints, objective, bedSymmetries, true);
+    }
+
+    /**
+     * @return the optimum of the objective (O1 or O2) under the constraints, with or without breaking bed symmetries
+     * and ordering identical crops
+     */
+    private static int optimum(Data data, String[] constraints, String objective, boolean bedSymmetries,
+                               boolean cropSymmetries) throws AgroEcoPlanProblem.AgroecoplanException {
+        AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data, true, false);
+        for (String c : constraints) {
+            pb.postConstraintFamily(c);
+        }
+        if (!cropSymmetries) {
+            pb.releaseCropSymmetries();
+        }
+        if (bedSymmetries) {
+            pb.breakBedSymmetries();
+        }
+        IntVar g = objective.equals("O1") ? pb.postInteractionConstraints() : pb.initNumberOfPositivePrecedencesCountBased();
+        pb.getModel().getSolver().limitTime("30s");
+        Solution sol = pb.getModel().getSolver().findOptimalSolution(g, true);
+        Assert.assertNotNull(sol);
+        return sol.getIntVal(g);
+    }
+
+    @Test
+    public void testBedSymmetriesKeepOptimum() throws IOException, CsvException, AgroEcoPlanProblem.AgroecoplanException {
+        Data data = data();
+        AgroEcoPlanProblem pb = new AgroEcoPlanProblem(data, true, false);
+        Assert.assertEquals(pb.breakBedSymmetries(), 2);
+        for (String objective : new String[]{"O1", "O2"}) {
+            // C2 uses the numbering of beds as adjacency, which changes the classes of interchangeable beds
+            for (String[] constraints : new String[][]{{}, {"C2"}}) {
+                Assert.assertEquals(optimum(data, constraints, objective, true),
+                        optimum(data, constraints, objective, false), objective + " " + String.join(",", constraints));
+            }
+        }
+    }
+
+    @Test
+    public void testCropSymmetriesKeepOptimum() throws IOException, CsvException, AgroEcoPlanProblem.AgroecoplanException {
+        Data data = data();
+        for (String objective : new String[]{"O1", "O2"}) {
+            // Alone, with the contiguous groups of C5, and with the value precedence over interchangeable beds
+            Assert.assertEquals(optimum(data, new String[]{}, objective, false, true),
+                    optimum(data, new String[]{}, objective, false, false), objective);
+            Assert.assertEquals(optimum(data, new String[]{"C5"}, objective, false, true),
+                    optimum(data, new String[]{"C5"}, objective, false, false), objective + " C5");
+            Assert.assertEquals(optimum(data, new String[]{}, objective, true, true),
+                    optimum(data, new String[]{}, objective, false, false), objective + " beds");
+        }
+    }
+}